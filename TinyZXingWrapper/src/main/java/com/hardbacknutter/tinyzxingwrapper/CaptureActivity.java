@@ -24,9 +24,12 @@ import com.google.zxing.Result;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
+import com.hardbacknutter.tinyzxingwrapper.scanner.AnalysisResolution;
 import com.hardbacknutter.tinyzxingwrapper.scanner.BarcodeScanner;
 import com.hardbacknutter.tinyzxingwrapper.scanner.DecoderResultListener;
+import com.hardbacknutter.tinyzxingwrapper.scanner.ScanMode;
 import com.hardbacknutter.tinyzxingwrapper.scanner.TzwViewfinderView;
 
 /**
@@ -68,6 +71,20 @@ public class CaptureActivity
             }
         }
 
+        @Override
+        public void onMultipleResults(@NonNull final List<Result> results) {
+            final List<Result> list = results
+                    .stream()
+                    .filter(result -> result.getText() != null && !result.getText().isBlank())
+                    .collect(Collectors.toList());
+            if (!list.isEmpty()) {
+                final Intent intent = ScanIntentResult.createActivityResultIntent(
+                        CaptureActivity.this, list, metaDataToReturn);
+                setResult(Activity.RESULT_OK, intent);
+                finish();
+            }
+        }
+
         @Override
         public void onError(@NonNull final Throwable e) {
             final Intent intent = new Intent()
@@ -105,15 +122,24 @@ public class CaptureActivity
         previewView = Objects.requireNonNull(view, "Missing R.id.tzw_preview");
 
 
-        // Note that the ScanMode is kept as default (Single)
-        // and that we always use the default DecoderFactory
+        // Note that the ScanMode is kept as default (Single) unless multiple barcodes
+        // are requested, and that we always use the default DecoderFactory
         final BarcodeScanner.Builder builder = new BarcodeScanner.Builder();
 
         Bundle args = getIntent().getExtras();
         if (args != null) {
             metaDataToReturn = args.getStringArrayList(ScanOptions.Option.RETURN_META_DATA);
 
-            builder.addHints(args);
+            builder.addHints(args)
+                   .setScanWindow(args.getFloat(ScanOptions.Option.SCAN_WINDOW, 1f))
+                   .setScanWindowFromPreview(
+                           args.getBoolean(ScanOptions.Option.SCAN_WINDOW_FROM_PREVIEW, false))
+                   .setAnalysisResolution(AnalysisResolution.getResolution(
+                           args.getInt(ScanOptions.Option.ANALYSIS_RESOLUTION, 0)));
+
+            if (args.getBoolean(ScanOptions.Option.MULTIPLE_BARCODES, false)) {
+                builder.setScanMode(ScanMode.Multiple);
+            }
         }
         scanner = builder.build(this);
 
@@ -11,8 +11,10 @@ import com.google.zxing.BarcodeFormat;
 import com.google.zxing.Result;
 import com.google.zxing.ResultMetadataType;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Encapsulates the result of a barcode scan.
@@ -84,6 +86,43 @@ public final class ScanIntentResult {
                 .putExtra(Success.BARCODE_TEXT, result.getText())
                 .putExtra(Success.BARCODE_FORMAT, result.getBarcodeFormat().toString());
 
+        putMetadata(intent, result, metadataKeys);
+        return intent;
+    }
+
+    /**
+     * Encode an intent to return as the Activity result for multiple barcodes.
+     * <p>
+     * The first result is encoded as per
+     * {@link #createActivityResultIntent(Context, Result, List)}, including its metadata.
+     * In addition, the texts and formats of all results are added as
+     * {@link Success#BARCODE_TEXTS} and {@link Success#BARCODE_FORMATS}.
+     *
+     * @param context      Current context
+     * @param results      the ZXing result value objects; must not be empty
+     * @param metadataKeys a {@code List<String>} with {@link ResultMetadataType} key names
+     *                     to send back if available.
+     *
+     * @return the Intent
+     */
+    @NonNull
+    public static Intent createActivityResultIntent(@NonNull final Context context,
+                                                    @NonNull final List<Result> results,
+                                                    @Nullable final List<String> metadataKeys) {
+        return createActivityResultIntent(context, results.get(0), metadataKeys)
+                .putStringArrayListExtra(Success.BARCODE_TEXTS, results
+                        .stream()
+                        .map(Result::getText)
+                        .collect(Collectors.toCollection(ArrayList::new)))
+                .putStringArrayListExtra(Success.BARCODE_FORMATS, results
+                        .stream()
+                        .map(result -> result.getBarcodeFormat().toString())
+                        .collect(Collectors.toCollection(ArrayList::new)));
+    }
+
+    private static void putMetadata(@NonNull final Intent intent,
+                                    @NonNull final Result result,
+                                    @Nullable final List<String> metadataKeys) {
         final Map<ResultMetadataType, ?> metadata = result.getResultMetadata();
         if (metadata != null && metadataKeys != null) {
             metadata.entrySet()
@@ -137,8 +176,6 @@ public final class ScanIntentResult {
                         }
                     });
         }
-
-        return intent;
     }
 
     /**
@@ -180,6 +217,53 @@ public final class ScanIntentResult {
         return null;
     }
 
+    /**
+     * If {@link #isSuccess()}, returns the texts of all barcodes found.
+     * <p>
+     * Only a scan with {@link ScanOptions#setMultipleBarcodes(boolean)} can return
+     * more than one; otherwise this is a list with just {@link #getText()}.
+     *
+     * @return list of texts; empty if the scan failed
+     */
+    @NonNull
+    public List<String> getTexts() {
+        if (success) {
+            //noinspection DataFlowIssue
+            final List<String> texts = intent.getStringArrayListExtra(Success.BARCODE_TEXTS);
+            if (texts != null) {
+                return texts;
+            }
+            //noinspection DataFlowIssue
+            return List.of(barcodeText);
+        }
+        return List.of();
+    }
+
+    /**
+     * If {@link #isSuccess()}, returns the formats of all barcodes found,
+     * in the same order as {@link #getTexts()}.
+     *
+     * @return list of formats; empty if the scan failed
+     */
+    @NonNull
+    public List<BarcodeFormat> getFormats() {
+        if (success) {
+            //noinspection DataFlowIssue
+            List<String> formats = intent.getStringArrayListExtra(Success.BARCODE_FORMATS);
+            if (formats == null) {
+                formats = List.of(intent.getStringExtra(Success.BARCODE_FORMAT));
+            }
+            try {
+                return formats.stream()
+                              .map(BarcodeFormat::valueOf)
+                              .collect(Collectors.toList());
+            } catch (@NonNull final IllegalArgumentException | NullPointerException ignore) {
+                // ignore
+            }
+        }
+        return List.of();
+    }
+
     /**
      * If {@link #isSuccess()}, returns the UPC EAN extension of the barcode.
      *
@@ -264,6 +348,21 @@ public final class ScanIntentResult {
          */
         public static final String BARCODE_FORMAT = "BARCODE_FORMAT";
 
+        /**
+         * The texts of all barcodes found; only present when multiple barcodes
+         * were requested. {@link #BARCODE_TEXT} contains the first one.
+         * <p>
+         * Type: {@code ArrayList<String>}
+         */
+        public static final String BARCODE_TEXTS = "BARCODE_TEXTS";
+
+        /**
+         * The formats of all barcodes found, in the same order as {@link #BARCODE_TEXTS}.
+         * <p>
+         * Type: {@code ArrayList<String>}
+         */
+        public static final String BARCODE_FORMATS = "BARCODE_FORMATS";
+
         private Success() {
         }
     }
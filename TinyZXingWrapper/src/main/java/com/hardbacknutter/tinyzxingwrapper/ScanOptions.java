@@ -19,7 +19,9 @@ import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
+import com.hardbacknutter.tinyzxingwrapper.scanner.AnalysisResolution;
 import com.hardbacknutter.tinyzxingwrapper.scanner.BarcodeScanner;
+import com.hardbacknutter.tinyzxingwrapper.scanner.ScanMode;
 
 /**
  * Input options for {@link ScanContract}.
@@ -123,6 +125,67 @@ public class ScanOptions {
         return this;
     }
 
+    /**
+     * Only decode the centre of each frame.
+     *
+     * @param fraction of the frame to use; {@code 1} for the full frame.
+     *
+     * @return this
+     *
+     * @see BarcodeScanner.Builder#setScanWindow(float)
+     */
+    @NonNull
+    public ScanOptions setScanWindow(final float fraction) {
+        intent.putExtra(Option.SCAN_WINDOW, fraction);
+        return this;
+    }
+
+    /**
+     * Only decode the part of each frame which is visible in the preview.
+     *
+     * @param enabled flag
+     *
+     * @return this
+     *
+     * @see BarcodeScanner.Builder#setScanWindowFromPreview(boolean)
+     */
+    @NonNull
+    public ScanOptions setScanWindowFromPreview(final boolean enabled) {
+        intent.putExtra(Option.SCAN_WINDOW_FROM_PREVIEW, enabled);
+        return this;
+    }
+
+    /**
+     * Set the resolution of the frames being analysed.
+     *
+     * @param resolution preset to use
+     *
+     * @return this
+     *
+     * @see BarcodeScanner.Builder#setAnalysisResolution(AnalysisResolution)
+     */
+    @NonNull
+    public ScanOptions setAnalysisResolution(@NonNull final AnalysisResolution resolution) {
+        intent.putExtra(Option.ANALYSIS_RESOLUTION, resolution.getAsInt());
+        return this;
+    }
+
+    /**
+     * Return all barcodes found in the frame, instead of only the first one.
+     *
+     * @param enabled flag
+     *
+     * @return this
+     *
+     * @see ScanMode#Multiple
+     * @see ScanIntentResult#getTexts()
+     */
+    @NonNull
+    public ScanOptions setMultipleBarcodes(final boolean enabled) {
+        intent.putExtra(Option.MULTIPLE_BARCODES, enabled);
+        return this;
+    }
+
     /**
      * Request extra/available meta data to be returned.
      *
@@ -293,6 +356,50 @@ public class ScanOptions {
          */
         public static final String RETURN_META_DATA = "RETURN_META_DATA";
 
+        /**
+         * The fraction of the frame (centred) to decode.
+         * <p>
+         * Type: float, in the range {@code (0..1]}
+         * <p>
+         * Default: {@code 1}, i.e. the full frame.
+         *
+         * @see ScanOptions#setScanWindow(float)
+         */
+        public static final String SCAN_WINDOW = "SCAN_WINDOW";
+
+        /**
+         * Only decode the part of the frame visible in the preview.
+         * <p>
+         * Type: boolean
+         * <p>
+         * Default: {@code false}
+         *
+         * @see ScanOptions#setScanWindowFromPreview(boolean)
+         */
+        public static final String SCAN_WINDOW_FROM_PREVIEW = "SCAN_WINDOW_FROM_PREVIEW";
+
+        /**
+         * The resolution of the frames being analysed.
+         * <p>
+         * Type: int, as returned by {@link AnalysisResolution#getAsInt()}
+         * <p>
+         * Default: {@link AnalysisResolution#Default}; i.e. let CameraX decide.
+         *
+         * @see ScanOptions#setAnalysisResolution(AnalysisResolution)
+         */
+        public static final String ANALYSIS_RESOLUTION = "ANALYSIS_RESOLUTION";
+
+        /**
+         * Return all barcodes found in the frame.
+         * <p>
+         * Type: boolean
+         * <p>
+         * Default: {@code false}; only the first barcode found is returned.
+         *
+         * @see ScanOptions#setMultipleBarcodes(boolean)
+         */
+        public static final String MULTIPLE_BARCODES = "MULTIPLE_BARCODES";
+
         private Option() {
         }
     }
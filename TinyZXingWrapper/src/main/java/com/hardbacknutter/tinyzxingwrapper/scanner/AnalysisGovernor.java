@@ -0,0 +1,108 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which frames to analyse, so the time spent decoding stays within a budget.
+ * <p>
+ * The decode latency and the interval between incoming frames are tracked as
+ * moving averages. From those, the governor works out how many frames to skip
+ * after each analysed frame; i.e. analyse every frame, every 2nd, ... every Nth.
+ * <p>
+ * It slows down one step at a time, but goes back to analysing every frame
+ * as soon as a decode shows any promise; i.e. (possible) result points were found.
+ * <p>
+ * Not thread-safe; when shared by multiple analyzers, callers must synchronize on it.
+ */
+final class AnalysisGovernor {
+
+    /** Never skip more than this number of frames in a row. */
+    private static final int MAX_STRIDE = 8;
+    /** The weight of a new measurement in the moving averages. */
+    private static final float SMOOTHING = 0.2f;
+    /** After a promising decode, analyse every frame for this amount of time. */
+    private static final long BOOST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** The fraction of time we're allowed to spend decoding. */
+    private final float budget;
+
+    private float avgDecodeNanos;
+    private float avgFrameIntervalNanos;
+    private long lastFrameTime;
+
+    /** Analyse one in this many frames. */
+    private int stride = 1;
+    /** The number of frames skipped since the last analysed frame. */
+    private int skipped;
+    private long boostUntil;
+
+    /**
+     * Constructor.
+     *
+     * @param budget the fraction of time we're allowed to spend decoding, {@code (0..1]}
+     */
+    AnalysisGovernor(final float budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Called for each incoming frame.
+     *
+     * @param now the current {@link System#nanoTime()}
+     *
+     * @return {@code true} if the frame should be analysed, {@code false} to skip it
+     */
+    boolean shouldAnalyze(final long now) {
+        if (lastFrameTime != 0) {
+            avgFrameIntervalNanos = average(avgFrameIntervalNanos, now - lastFrameTime);
+        }
+        lastFrameTime = now;
+
+        if (skipped + 1 >= stride) {
+            skipped = 0;
+            return true;
+        }
+        skipped++;
+        return false;
+    }
+
+    /**
+     * Called after a frame was analysed.
+     *
+     * @param decodeNanos the time it took to analyse the frame
+     * @param promising   {@code true} if a result, or possible result points, were found
+     * @param now         the current {@link System#nanoTime()}
+     */
+    void onAnalyzed(final long decodeNanos,
+                    final boolean promising,
+                    final long now) {
+        avgDecodeNanos = average(avgDecodeNanos, decodeNanos);
+
+        if (promising) {
+            boostUntil = now + BOOST_NANOS;
+            stride = 1;
+            return;
+        }
+        if (now < boostUntil || avgFrameIntervalNanos <= 0) {
+            return;
+        }
+
+        // Analysing one in 'stride' frames uses this fraction of the time:
+        //   avgDecodeNanos / (stride * avgFrameIntervalNanos)
+        final int target = Math.max(1, Math.min(MAX_STRIDE, (int) Math.ceil(
+                avgDecodeNanos / (budget * avgFrameIntervalNanos))));
+        if (target > stride) {
+            stride++;
+        } else {
+            stride = target;
+        }
+    }
+
+    private static float average(final float average,
+                                 final long value) {
+        if (average <= 0) {
+            return value;
+        }
+        return average + SMOOTHING * (value - average);
+    }
+}
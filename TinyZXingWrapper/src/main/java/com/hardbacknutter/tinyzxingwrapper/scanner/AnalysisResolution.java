@@ -0,0 +1,121 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.zxing.BarcodeFormat;
+
+import java.util.Collection;
+
+/**
+ * Presets for the resolution of the frames being analysed.
+ * <p>
+ * Decoding time scales with the number of pixels. 1D barcodes decode fine at a low
+ * resolution, while dense 2D barcodes (PDF417, DataMatrix, Aztec) need more pixels.
+ * <p>
+ * The camera picks the closest resolution it supports, preferring a 4:3 aspect ratio.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public enum AnalysisResolution {
+    /**
+     * Let CameraX decide; this is the default.
+     */
+    Default(0, null),
+    /**
+     * Pick one of the other presets based on the barcode formats to scan.
+     *
+     * @see #forFormats(Collection)
+     */
+    Auto(1, null),
+    /**
+     * 640x480; for 1D barcodes, e.g. EAN/UPC.
+     */
+    Low(2, new Size(640, 480)),
+    /**
+     * 1280x960; for QR codes, or a mix of 1D and 2D barcodes.
+     */
+    Medium(3, new Size(1280, 960)),
+    /**
+     * 1920x1440; for dense 2D barcodes, e.g. PDF417 and DataMatrix.
+     */
+    High(4, new Size(1920, 1440));
+
+    private final int mode;
+    @Nullable
+    private final Size size;
+
+    AnalysisResolution(final int mode,
+                       @Nullable final Size size) {
+        this.mode = mode;
+        this.size = size;
+    }
+
+    /**
+     * Helper method for converting a previously stored in from {@link #getAsInt()}
+     * back to the enum value.
+     *
+     * @param mode to lookup
+     *
+     * @return enum value
+     */
+    @NonNull
+    public static AnalysisResolution getResolution(final int mode) {
+        switch (mode) {
+            case 1:
+                return Auto;
+            case 2:
+                return Low;
+            case 3:
+                return Medium;
+            case 4:
+                return High;
+            case 0:
+            default:
+                return Default;
+        }
+    }
+
+    /**
+     * Pick a preset suitable for the given barcode formats.
+     *
+     * @param formats to scan for; typically the value of
+     *                {@link com.google.zxing.DecodeHintType#POSSIBLE_FORMATS}
+     *
+     * @return {@link #Low} for 1D barcodes only, {@link #High} if any dense 2D barcode
+     *         is included, or {@link #Medium} otherwise; this includes "all formats".
+     */
+    @NonNull
+    public static AnalysisResolution forFormats(@Nullable final Collection<?> formats) {
+        if (BarcodeFamily.isLinear(formats)) {
+            return Low;
+        }
+        if (formats != null && (formats.contains(BarcodeFormat.PDF_417)
+                                || formats.contains(BarcodeFormat.DATA_MATRIX)
+                                || formats.contains(BarcodeFormat.AZTEC))) {
+            return High;
+        }
+        return Medium;
+    }
+
+    /**
+     * Get the preferred size of the frames.
+     *
+     * @return size, or {@code null} for {@link #Default} and {@link #Auto}
+     */
+    @Nullable
+    public Size getSize() {
+        return size;
+    }
+
+    /**
+     * Helper method to retrieve the int value.
+     * e.g. for storing in Preferences.
+     *
+     * @return int
+     */
+    public int getAsInt() {
+        return mode;
+    }
+}
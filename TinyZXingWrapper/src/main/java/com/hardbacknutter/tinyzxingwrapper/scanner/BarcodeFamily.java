@@ -1,10 +1,14 @@
 package com.hardbacknutter.tinyzxingwrapper.scanner;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.google.zxing.BarcodeFormat;
 
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * <a href="https://www.peaktech.com/blog/learn-about-the-different-types-of-barcodes/">
@@ -44,6 +48,61 @@ public final class BarcodeFamily {
             BarcodeFormat.ITF,
             BarcodeFormat.CODABAR);
 
+    /**
+     * All 1D barcode types; i.e. those which can be decoded from a single line
+     * through the barcode.
+     */
+    private static final Set<BarcodeFormat> LINEAR = EnumSet.of(
+            BarcodeFormat.UPC_A,
+            BarcodeFormat.UPC_E,
+            BarcodeFormat.EAN_13,
+            BarcodeFormat.EAN_8,
+            BarcodeFormat.UPC_EAN_EXTENSION,
+            BarcodeFormat.RSS_14,
+            BarcodeFormat.RSS_EXPANDED,
+            BarcodeFormat.CODE_39,
+            BarcodeFormat.CODE_93,
+            BarcodeFormat.CODE_128,
+            BarcodeFormat.ITF,
+            BarcodeFormat.CODABAR);
+
     private BarcodeFamily() {
     }
+
+    /**
+     * Check whether the given formats are all 1D barcode types.
+     *
+     * @param formats to check; typically the value of
+     *                {@link com.google.zxing.DecodeHintType#POSSIBLE_FORMATS}
+     *
+     * @return {@code true} if there is at least one format, and all of them are 1D.
+     *         An empty or {@code null} list means "all formats" and returns {@code false}.
+     */
+    public static boolean isLinear(@Nullable final Collection<?> formats) {
+        return formats != null && !formats.isEmpty() && LINEAR.containsAll(formats);
+    }
+
+    /**
+     * Check whether the given format is a 1D barcode type.
+     *
+     * @param format to check
+     *
+     * @return {@code true} if the format is 1D
+     */
+    public static boolean isLinear(@NonNull final BarcodeFormat format) {
+        return LINEAR.contains(format);
+    }
+
+    /**
+     * Check whether the given formats include any 1D barcode type.
+     *
+     * @param formats to check; typically the value of
+     *                {@link com.google.zxing.DecodeHintType#POSSIBLE_FORMATS}
+     *
+     * @return {@code true} if at least one of the formats is 1D.
+     *         An empty or {@code null} list means "all formats" and returns {@code true}.
+     */
+    public static boolean hasLinear(@Nullable final Collection<?> formats) {
+        return formats == null || formats.isEmpty() || formats.stream().anyMatch(LINEAR::contains);
+    }
 }
@@ -1,9 +1,14 @@
 package com.hardbacknutter.tinyzxingwrapper.scanner;
 
 import android.content.Context;
+import android.graphics.Rect;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Size;
 
+import androidx.annotation.FloatRange;
 import androidx.annotation.GuardedBy;
+import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.camera.core.Camera;
@@ -13,6 +18,11 @@ import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
+import androidx.camera.core.UseCaseGroup;
+import androidx.camera.core.ViewPort;
+import androidx.camera.core.resolutionselector.AspectRatioStrategy;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
@@ -27,17 +37,25 @@ import com.google.zxing.LuminanceSource;
 import com.google.zxing.Result;
 import com.google.zxing.ResultPoint;
 
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import com.hardbacknutter.tinyzxingwrapper.ScanContract;
@@ -66,10 +84,113 @@ public class BarcodeScanner
     private final Executor mainExecutor;
     private final Object lock = new Object();
 
+    /**
+     * Pixel buffers are recycled between frames.
+     */
+    @NonNull
+    private final FrameBufferPool bufferPool;
+    /** Delivers the possible result points to the listener, if any. */
+    @NonNull
+    private final ResultPointChannel pointChannel = new ResultPointChannel();
+
     @NonNull
     private final DecoderFactory decoderFactory;
     @NonNull
     private final ScanMode scanMode;
+    /**
+     * The fraction of the frame (centred) to decode.
+     */
+    private final float scanWindow;
+    /**
+     * Restrict decoding to the part of the frame visible in the {@link PreviewView}.
+     */
+    private final boolean scanWindowFromPreview;
+    /**
+     * If {@code > 1}, first try decoding a frame reduced by this factor.
+     */
+    private final int pyramidFactor;
+    /**
+     * Only decode a few rows of each frame; set when all formats are 1D formats.
+     */
+    private final boolean scanlines;
+    /**
+     * Decode the frames as delivered by the sensor, instead of in display orientation.
+     */
+    private final boolean rotationFree;
+    /**
+     * Whether any of the formats (might) be 1D.
+     * Only used with {@link #rotationFree}.
+     */
+    private final boolean hasLinear;
+    /** Whether the default decoder uses {@link DecodeHintType#TRY_HARDER} on all frames. */
+    private final boolean tryHarder;
+    /**
+     * How to select the resolution of the analysed frames;
+     * {@code null} to use the CameraX defaults.
+     */
+    @Nullable
+    private final ResolutionSelector analysisResolutionSelector;
+    /**
+     * Frames scoring below these thresholds are not decoded.
+     */
+    private final float minSharpness;
+    private final float maxClipped;
+    /**
+     * Frames which differ less than this from the last frame decoded without a result,
+     * are not decoded. {@code 0} to disable.
+     */
+    private final float duplicateThreshold;
+    /** Decode a duplicate frame anyhow after this amount of time. {@code 0} for never. */
+    private final long forcedDecodeIntervalNanos;
+    /**
+     * The fraction of time the analyzer is allowed to spend decoding.
+     * {@code 1} to analyse every frame.
+     */
+    private final float analysisBudget;
+    /**
+     * Decides which frames to skip to stay within the {@link #analysisBudget}.
+     * Shared by all analyzers; access must be synchronized on the governor itself.
+     */
+    @Nullable
+    private final AnalysisGovernor governor;
+    /**
+     * The number of frames decoded concurrently; each on its own thread with its own decoder.
+     */
+    private final int decoderThreads;
+    /**
+     * Set as soon as a result is found in {@link ScanMode#Single}
+     * or {@link ScanMode#Multiple};
+     * any frames still being decoded, or arriving after that, are ignored.
+     */
+    private final AtomicBoolean singleResultFound = new AtomicBoolean();
+    /**
+     * The number of promising failures in a row before the {@link #scheduledEfforts}
+     * are used; {@code 0} to always use the hints as-is.
+     */
+    private final int decodeSchedulingStreak;
+    /**
+     * The expensive hints which were taken out of the decoder configuration,
+     * to be used on selected frames only. Empty if scheduling is not used.
+     */
+    @NonNull
+    private final Set<DecodeEffort> scheduledEfforts = EnumSet.noneOf(DecodeEffort.class);
+    /** The time budget for decoding a frame; {@code 0} for none. */
+    private final long frameBudgetNanos;
+    /** Frames waiting longer than this before decoding are dropped; {@code 0} for no limit. */
+    private final long maxFrameAgeNanos;
+    /** Incremented by {@link #stop()} to abort all decoding in progress. */
+    private final AtomicInteger decodeGeneration = new AtomicInteger();
+    /**
+     * The number of frames to first try the region where a barcode was last seen;
+     * {@code 0} to disable.
+     */
+    private final int regionTrackingFrames;
+    /**
+     * Holds back results until enough frames agree on them; {@code null} if not used.
+     * Shared by all analyzers.
+     */
+    @Nullable
+    private final ResultConsensus consensus;
 
     /**
      * Default is {@code null} which lets the device decide.
@@ -80,13 +201,29 @@ public class BarcodeScanner
     private Integer lensFacing;
     private boolean enableTorch;
     @Nullable
-    private DecoderResultPointsListener resultPointsListener;
+    private FrameQualityListener frameQualityListener;
     @GuardedBy("lock")
     @Nullable
     private ProcessCameraProvider cameraProvider;
     @GuardedBy("lock")
     @Nullable
     private CameraControl cameraControl;
+    @GuardedBy("lock")
+    @Nullable
+    private ParallelAnalyzer parallelAnalyzer;
+
+    /**
+     * Main thread only. Prevent duplicate scans in {@link ScanMode#Continuous}.
+     */
+    @Nullable
+    private String lastBarcodeText;
+    /** Main thread only. The sequence number of the frame of the last result. */
+    private long lastResultSequence = -1;
+    /**
+     * Main thread only. Set once the result is delivered in {@link ScanMode#Single}
+     * or {@link ScanMode#Multiple}.
+     */
+    private boolean singleResultDelivered;
 
     private BarcodeScanner(@NonNull final Context context,
                            @NonNull final Builder builder) {
@@ -96,10 +233,99 @@ public class BarcodeScanner
         cameraProviderFuture = ProcessCameraProvider.getInstance(context);
 
         scanMode = Objects.requireNonNullElse(builder.scanMode, ScanMode.Single);
+        scanWindow = builder.scanWindow;
+        scanWindowFromPreview = builder.scanWindowFromPreview;
+        pyramidFactor = builder.pyramidFactor;
+
+        // We can only tell which formats will be decoded when we create the decoder
+        final Object formats = builder.hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        // With TRY_HARDER, the reader scans every other row, and retries the image rotated;
+        // neither works on a few sampled rows.
+        scanlines = builder.scanlineDecoding
+                    && builder.decoderFactory == null
+                    && formats instanceof Collection
+                    && BarcodeFamily.isLinear((Collection<?>) formats)
+                    && !isEnabled(builder.hints.get(DecodeHintType.TRY_HARDER));
+        rotationFree = builder.rotationFree;
+        // We have no idea what a custom decoder does, so assume the worst
+        hasLinear = builder.decoderFactory != null
+                    || !(formats instanceof Collection)
+                    || BarcodeFamily.hasLinear((Collection<?>) formats);
+
+        minSharpness = builder.minSharpness;
+        maxClipped = builder.maxClipped;
+        duplicateThreshold = builder.duplicateThreshold;
+        forcedDecodeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+                builder.forcedDecodeIntervalMs);
+        analysisBudget = builder.analysisBudget;
+        governor = analysisBudget < 1 ? new AnalysisGovernor(analysisBudget) : null;
+        decoderThreads = builder.decoderThreads;
+        bufferPool = new FrameBufferPool(decoderThreads);
+        frameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(builder.frameBudgetMs);
+        maxFrameAgeNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxFrameAgeMs);
+        regionTrackingFrames = builder.regionTrackingFrames;
+        consensus = ResultConsensus.isNeeded(builder.consensusVotes)
+                    ? new ResultConsensus(builder.consensusVotes,
+                                          TimeUnit.MILLISECONDS.toNanos(
+                                                  builder.consensusWindowMs))
+                    : null;
+
+        final Map<DecodeHintType, Object> hints = new EnumMap<>(builder.hints);
+        decodeSchedulingStreak = builder.decodeSchedulingStreak;
+        if (decodeSchedulingStreak > 0
+            && builder.decoderFactory == null
+            && scanMode != ScanMode.Multiple) {
+            if (isEnabled(hints.remove(DecodeHintType.ALSO_INVERTED))) {
+                scheduledEfforts.add(DecodeEffort.Inverted);
+            }
+            if (isEnabled(hints.remove(DecodeHintType.TRY_HARDER))) {
+                scheduledEfforts.add(DecodeEffort.TryHarder);
+            }
+        }
+
+        tryHarder = builder.decoderFactory == null
+                    && isEnabled(hints.get(DecodeHintType.TRY_HARDER));
+
+        if (builder.analysisResolutionSelector != null) {
+            analysisResolutionSelector = builder.analysisResolutionSelector;
+        } else if (builder.analysisResolution == AnalysisResolution.Auto) {
+            analysisResolutionSelector = createResolutionSelector(AnalysisResolution.forFormats(
+                    formats instanceof Collection ? (Collection<?>) formats : null));
+        } else {
+            analysisResolutionSelector = createResolutionSelector(builder.analysisResolution);
+        }
 
         decoderFactory = Objects.requireNonNullElseGet(builder.decoderFactory,
                                                        () -> new DefaultDecoderFactory(
-                                                               builder.hints));
+                                                               hints,
+                                                               builder.binarizer,
+                                                               builder.formatStatistics,
+                                                               builder.narrowAfterHits));
+    }
+
+    private static boolean isEnabled(@Nullable final Object hint) {
+        return hint != null && !Boolean.FALSE.equals(hint);
+    }
+
+    /**
+     * Create a selector for the given preset.
+     *
+     * @param resolution preset
+     *
+     * @return selector, or {@code null} to use the CameraX defaults
+     */
+    @Nullable
+    private static ResolutionSelector createResolutionSelector(
+            @NonNull final AnalysisResolution resolution) {
+        final Size size = resolution.getSize();
+        if (size == null) {
+            return null;
+        }
+        return new ResolutionSelector.Builder()
+                .setAspectRatioStrategy(AspectRatioStrategy.RATIO_4_3_FALLBACK_AUTO_STRATEGY)
+                .setResolutionStrategy(new ResolutionStrategy(
+                        size, ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER))
+                .build();
     }
 
     /**
@@ -109,7 +335,17 @@ public class BarcodeScanner
      * @param listener a listener; can be {@code null} for none.
      */
     public void setResultPointListener(@Nullable final DecoderResultPointsListener listener) {
-        this.resultPointsListener = listener;
+        pointChannel.setListener(listener);
+    }
+
+    /**
+     * Optionally set the listener to be informed of the quality of each frame.
+     * Takes effect immediately.
+     *
+     * @param listener a listener; can be {@code null} for none.
+     */
+    public void setFrameQualityListener(@Nullable final FrameQualityListener listener) {
+        this.frameQualityListener = listener;
     }
 
     /**
@@ -173,132 +409,69 @@ public class BarcodeScanner
                         }
                         final CameraSelector cameraSelector = csb.build();
 
-                        final Decoder decoder = decoderFactory.createDecoder();
-
                         final Preview preview = new Preview.Builder().build();
                         preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
 
                         final ImageCapture imageCapture = new ImageCapture.Builder().build();
 
-                        final ImageAnalysis.Analyzer analyzer = new ImageAnalysis.Analyzer() {
-
-                            /** Prevent duplicate scans in {@link ScanMode#Continuous}. */
-                            @Nullable
-                            private String lastBarcodeText;
-
-                            @Override
-                            public void analyze(@NonNull final ImageProxy image) {
-                                try (image) {
-                                    final LuminanceSource luminanceSource = process(image);
-                                    final Result result = decoder.decode(luminanceSource);
-                                    if (result != null) {
-                                        forwardResult(result);
-                                        if (scanMode == ScanMode.Single) {
-                                            // all done
-                                            return;
-                                        }
-                                    }
-
-                                    if (resultPointsListener != null) {
-                                        final List<ResultPoint> possibleResultPoints =
-                                                decoder.getPossibleResultPoints();
-                                        if (!possibleResultPoints.isEmpty()) {
-                                            updatePoints(image, possibleResultPoints);
-                                        }
-                                    }
-
-                                } catch (@NonNull final Throwable e) {
-                                    // catching Throwable, as we see StackOverflowError
-                                    // on some devices.
-                                    mainExecutor.execute(() -> {
-                                        resultListener.onError(e);
-                                        BarcodeScanner.this.stop();
-                                    });
-                                }
-                            }
-
-                            @NonNull
-                            private SimpleLuminanceSource process(@NonNull final ImageProxy image) {
-                                // The image provided has format ImageFormat.YUV_420_888.
-                                // so we only take the Y data from plane 0
-                                final ImageProxy.PlaneProxy yPlane = image.getPlanes()[0];
-
-                                final ByteBuffer yByteBuffer = yPlane.getBuffer();
-                                yByteBuffer.rewind();
-                                final byte[] yData = new byte[yByteBuffer.remaining()];
-                                yByteBuffer.get(yData);
-
-                                return new SimpleLuminanceSource(yData,
-                                                                 image.getWidth(),
-                                                                 image.getHeight(),
-                                                                 yPlane.getRowStride(),
-                                                                 yPlane.getPixelStride())
-                                        .flipHorizontal(isImageFlipped)
-                                        .rotate(image.getImageInfo()
-                                                     .getRotationDegrees());
-                            }
+                        singleResultFound.set(false);
+                        singleResultDelivered = false;
+                        lastBarcodeText = null;
+                        lastResultSequence = -1;
+                        pointChannel.attach();
+                        if (consensus != null) {
+                            consensus.clear();
+                        }
 
-                            private void forwardResult(@NonNull final Result result) {
-                                mainExecutor.execute(() -> {
-                                    if (scanMode == ScanMode.Single) {
-                                        resultListener.onResult(result);
-                                        BarcodeScanner.this.stop();
-                                    } else {
-                                        // don't check on null/blank
-                                        if (!Objects.equals(lastBarcodeText, result.getText())) {
-                                            lastBarcodeText = result.getText();
-                                            resultListener.onResult(result);
-                                        }
-                                    }
-                                });
-                            }
+                        final ImageAnalysis.Builder analysisBuilder = new ImageAnalysis.Builder();
+                        if (analysisResolutionSelector != null) {
+                            analysisBuilder.setResolutionSelector(analysisResolutionSelector);
+                        }
 
-                            /**
-                             * When using the {@link DefaultDecoderFactory}, the zxing
-                             * "MultiFormatReader" will send the possible result-points
-                             * to the decoder during the above decoder.decode() call.
-                             * When the decode() call is done (successful or failure),
-                             * we take that collection of ResultPoint's and, after potentially
-                             * mirroring the points, forward them to the user-settable listener.
-                             *
-                             * @param image incoming image
-                             * @param points the possible points found
-                             */
-                            private void updatePoints(@NonNull final ImageProxy image,
-                                                      @NonNull final List<ResultPoint> points) {
-
-                                mainExecutor.execute(() -> {
-                                    //noinspection DataFlowIssue
-                                    resultPointsListener.setImageSize(image.getWidth(),
-                                                                      image.getHeight());
-                                    points.forEach(point -> {
-                                        if (isImageFlipped) {
-                                            final float x = image.getWidth() - point.getX();
-                                            final float y = point.getY();
-                                            resultPointsListener.foundPossibleResultPoint(
-                                                    new ResultPoint(x, y));
-                                        } else {
-                                            resultPointsListener.foundPossibleResultPoint(
-                                                    point);
-                                        }
-                                    });
-                                });
-                            }
-                        };
+                        final ImageAnalysis.Analyzer analyzer;
+                        if (decoderThreads > 1) {
+                            // Let the camera hand us a frame for each thread, instead of
+                            // waiting for the previous frame to be closed.
+                            analysisBuilder
+                                    .setBackpressureStrategy(
+                                            ImageAnalysis.STRATEGY_BLOCK_PRODUCER)
+                                    .setImageQueueDepth(decoderThreads + 1);
+                            analyzer = new ParallelAnalyzer(resultListener, isImageFlipped);
+                        } else {
+                            analyzer = new FrameAnalyzer(decoderFactory.createDecoder(),
+                                                         resultListener, isImageFlipped);
+                        }
 
-                        final ImageAnalysis imageAnalyzer = new ImageAnalysis.Builder().build();
+                        final ImageAnalysis imageAnalyzer = analysisBuilder.build();
                         imageAnalyzer.setAnalyzer(cameraExecutor, analyzer);
 
                         synchronized (lock) {
+                            shutdownParallelAnalyzer();
+                            if (analyzer instanceof ParallelAnalyzer) {
+                                parallelAnalyzer = (ParallelAnalyzer) analyzer;
+                            }
+
                             cameraProvider = cameraProviderFuture.get();
                             cameraProvider.unbindAll();
 
+                            final UseCaseGroup.Builder useCases = new UseCaseGroup.Builder()
+                                    .addUseCase(preview)
+                                    .addUseCase(imageCapture)
+                                    .addUseCase(imageAnalyzer);
+                            if (scanWindowFromPreview) {
+                                // The crop rectangle of the analysis images will then
+                                // match the part of the frame visible in the preview.
+                                // Not available if the view has not been laid out yet.
+                                final ViewPort viewPort = previewView.getViewPort();
+                                if (viewPort != null) {
+                                    useCases.setViewPort(viewPort);
+                                }
+                            }
+
                             final Camera camera = cameraProvider
                                     .bindToLifecycle(lifecycleOwner, cameraSelector,
-                                                     preview,
-                                                     imageCapture,
-                                                     imageAnalyzer);
+                                                     useCases.build());
 
                             cameraControl = camera.getCameraControl();
                             cameraControl.enableTorch(enableTorch);
@@ -314,13 +487,25 @@ public class BarcodeScanner
 
     /**
      * Stop the scanner.
+     * <p>
+     * Any decoding in progress is aborted.
      */
     public void stop() {
+        decodeGeneration.incrementAndGet();
         synchronized (lock) {
             cameraControl = null;
             if (cameraProvider != null) {
                 cameraProvider.unbindAll();
             }
+            shutdownParallelAnalyzer();
+        }
+    }
+
+    @GuardedBy("lock")
+    private void shutdownParallelAnalyzer() {
+        if (parallelAnalyzer != null) {
+            parallelAnalyzer.shutdown();
+            parallelAnalyzer = null;
         }
     }
 
@@ -328,43 +513,1327 @@ public class BarcodeScanner
     public void onStateChanged(@NonNull final LifecycleOwner source,
                                @NonNull final Lifecycle.Event event) {
         if (event == Lifecycle.Event.ON_DESTROY) {
+            decodeGeneration.incrementAndGet();
             cameraExecutor.shutdown();
+            pointChannel.detach();
+            synchronized (lock) {
+                shutdownParallelAnalyzer();
+            }
+            bufferPool.clear();
         }
     }
 
     /**
-     * The builder prepares all/any arguments related to the actual barcode decoding.
+     * Deliver a result on the main thread.
+     * <p>
+     * When decoding in parallel, results can arrive out of order. A result from a frame
+     * older than the last delivered result is dropped, as is a repeat of the same barcode.
+     * In {@link ScanMode#Single}, only the first result is delivered.
+     *
+     * @param result         to deliver
+     * @param sequence       the sequence number of the frame
+     * @param resultListener to deliver to
      */
-    @SuppressWarnings({"unused", "UnusedReturnValue"})
-    public static class Builder {
-        private final Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+    private void forwardResult(@NonNull final Result result,
+                               final long sequence,
+                               @NonNull final DecoderResultListener resultListener) {
+        mainExecutor.execute(() -> {
+            if (scanMode == ScanMode.Single) {
+                if (!singleResultDelivered) {
+                    singleResultDelivered = true;
+                    resultListener.onResult(result);
+                    stop();
+                }
+            } else if (sequence > lastResultSequence) {
+                lastResultSequence = sequence;
+                // don't check on null/blank
+                if (!Objects.equals(lastBarcodeText, result.getText())) {
+                    lastBarcodeText = result.getText();
+                    resultListener.onResult(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * Deliver all results of a frame on the main thread, in {@link ScanMode#Multiple}.
+     * Only the first frame with results is delivered.
+     *
+     * @param results        to deliver
+     * @param resultListener to deliver to
+     */
+    private void forwardResults(@NonNull final List<Result> results,
+                                @NonNull final DecoderResultListener resultListener) {
+        mainExecutor.execute(() -> {
+            if (!singleResultDelivered) {
+                singleResultDelivered = true;
+                resultListener.onMultipleResults(results);
+                stop();
+            }
+        });
+    }
+
+    /**
+     * Hands the camera frames to a pool of {@link FrameAnalyzer}s, each running
+     * on its own thread with its own {@link Decoder}.
+     * <p>
+     * A frame arriving while all analyzers are busy is dropped immediately,
+     * so the camera is never blocked.
+     */
+    private class ParallelAnalyzer
+            implements ImageAnalysis.Analyzer {
+
+        @NonNull
+        private final ExecutorService workers;
+        /** The analyzers not decoding a frame right now. */
+        @NonNull
+        private final BlockingQueue<FrameAnalyzer> idle;
+        /** Only accessed from the camera executor. */
+        private long sequence;
+
+        ParallelAnalyzer(@NonNull final DecoderResultListener resultListener,
+                         final boolean isImageFlipped) {
+            idle = new ArrayBlockingQueue<>(decoderThreads);
+            for (int i = 0; i < decoderThreads; i++) {
+                idle.add(new FrameAnalyzer(decoderFactory.createDecoder(),
+                                           resultListener, isImageFlipped));
+            }
+            workers = Executors.newFixedThreadPool(decoderThreads);
+        }
+
+        @Override
+        public void analyze(@NonNull final ImageProxy image) {
+            final FrameAnalyzer analyzer = idle.poll();
+            if (analyzer == null) {
+                image.close();
+                return;
+            }
+            try {
+                workers.execute(new FrameTask(analyzer, image, ++sequence));
+            } catch (@NonNull final RejectedExecutionException e) {
+                // We're shutting down
+                idle.add(analyzer);
+                image.close();
+            }
+        }
+
+        /**
+         * Stop all decoding. Frames being decoded are interrupted;
+         * frames not yet started are closed.
+         */
+        void shutdown() {
+            for (final Runnable task : workers.shutdownNow()) {
+                ((FrameTask) task).image.close();
+            }
+        }
+
+        private final class FrameTask
+                implements Runnable {
+
+            @NonNull
+            private final FrameAnalyzer analyzer;
+            @NonNull
+            private final ImageProxy image;
+            private final long frameSequence;
+
+            FrameTask(@NonNull final FrameAnalyzer analyzer,
+                      @NonNull final ImageProxy image,
+                      final long frameSequence) {
+                this.analyzer = analyzer;
+                this.image = image;
+                this.frameSequence = frameSequence;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    analyzer.analyze(image, frameSequence);
+                } finally {
+                    idle.add(analyzer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Analyses the camera frames and forwards the results.
+     */
+    private class FrameAnalyzer
+            implements ImageAnalysis.Analyzer {
+
+        /**
+         * The number of rows decoded in {@link #scanlines} mode.
+         * Without {@link DecodeHintType#TRY_HARDER}, the 1D readers look at (at most) 15 rows
+         * around the middle of the image; we use the same rows, but instead of handing over
+         * the full image and letting the reader pick, we only give it those rows.
+         */
+        private static final int SCANLINES = 15;
+
+        @NonNull
+        private final Decoder decoder;
+        @NonNull
+        private final DecoderResultListener resultListener;
+        private final boolean isImageFlipped;
+
+        /**
+         * The scan window for the current frame, in the coordinates of the decoded image.
+         * i.e. the oriented image, or the sensor image in {@link #rotationFree} mode.
+         */
+        private final Rect window = new Rect();
+        /** The scan window for the current frame, in the coordinates of the sensor image. */
+        private final Rect sensorWindow = new Rect();
+        /**
+         * The area around the possible result points of a coarse decode,
+         * or the region from the {@link #tracker}.
+         */
+        private final Rect region = new Rect();
+        /** Used to skip frames identical to the last one decoded without a result. */
+        private final FrameSignature signature = new FrameSignature();
+        /** Reopened for each frame; lends the pixel buffers from the {@link #bufferPool}. */
+        private final FrameBufferPool.Lease frameLease = bufferPool.lease();
+        /** Reused to map the possible result points for the {@link #pointChannel}. */
+        private final float[] mappedPoints = new float[ResultPointChannel.MAX_POINTS * 2];
+        /** Aborts decoding the current frame when it's out of time, or we're stopped. */
+        private final DecodeDeadline deadline = new DecodeDeadline(decodeGeneration,
+                                                                   frameBudgetNanos);
+
+        /**
+         * How to map the points found by the last decode back to the full frame.
+         * i.e. {@code x * pointScaleX + pointOffsetX}
+         */
+        private int pointScaleX = 1;
+        private int pointScaleY = 1;
+        private int pointOffsetX;
+        private int pointOffsetY;
+        /**
+         * How to map the points from the decoded full frame to the oriented frame.
+         * The size of the decoded full frame, and the degrees to rotate it clockwise.
+         */
+        private int pointFrameWidth;
+        private int pointFrameHeight;
+        private int pointRotation;
+
+        /** The sequence number of the last frame, when not used by a {@link ParallelAnalyzer}. */
+        private long sequence;
+        /**
+         * Whether the frame timestamps use {@link SystemClock#elapsedRealtimeNanos()}
+         * instead of the uptime clock. Decided on the first frame.
+         */
+        private boolean timestampsSinceBoot;
+        private boolean timestampBaseKnown;
 
+        /** Decides the effort for each frame; {@code null} if not used. */
         @Nullable
-        private DecoderFactory decoderFactory;
+        private final DecodeScheduler scheduler;
+        /** The effort to spend on the current frame. */
+        @NonNull
+        private Set<DecodeEffort> effort = Set.of();
+        /** Remembers where the last barcode was seen; {@code null} if not used. */
         @Nullable
-        private ScanMode scanMode;
+        private final RegionTracker tracker;
+
+        FrameAnalyzer(@NonNull final Decoder decoder,
+                      @NonNull final DecoderResultListener resultListener,
+                      final boolean isImageFlipped) {
+            this.decoder = decoder;
+            this.resultListener = resultListener;
+            this.isImageFlipped = isImageFlipped;
+            scheduler = scheduledEfforts.isEmpty()
+                        ? null : new DecodeScheduler(decodeSchedulingStreak, scheduledEfforts);
+            tracker = regionTrackingFrames > 0 && scanMode != ScanMode.Multiple && !scanlines
+                      ? new RegionTracker(regionTrackingFrames) : null;
+        }
+
+        @Override
+        public void analyze(@NonNull final ImageProxy image) {
+            analyze(image, ++sequence);
+        }
 
         /**
-         * Set the {@link ScanMode}.
+         * Analyse a frame.
          *
-         * @param mode to use
+         * @param image         incoming image
+         * @param frameSequence the sequence number of the frame, used to order the results
          */
-        public void setScanMode(@NonNull final ScanMode mode) {
-            this.scanMode = mode;
+        void analyze(@NonNull final ImageProxy image,
+                     final long frameSequence) {
+            // The lease returns all pixel buffers to the pool
+            // after decoding is done.
+            try (image; FrameBufferPool.Lease lease = frameLease.reopen()) {
+                if (scanMode != ScanMode.Continuous && singleResultFound.get()) {
+                    return;
+                }
+                if (maxFrameAgeNanos > 0 && getFrameAge(image) > maxFrameAgeNanos) {
+                    // Too late; a newer frame is on its way
+                    return;
+                }
+                final long now = System.nanoTime();
+                if (governor != null) {
+                    synchronized (governor) {
+                        if (!governor.shouldAnalyze(now)) {
+                            return;
+                        }
+                    }
+                }
+                setSensorWindow(image);
+                if (isDuplicate(image, now) || !checkQuality(image, lease)) {
+                    return;
+                }
+                if (scheduler != null) {
+                    effort = scheduler.next();
+                }
+                deadline.start(now);
+
+                final int rotation = image.getImageInfo().getRotationDegrees();
+                final boolean multiple = scanMode == ScanMode.Multiple;
+                final boolean useScanlines = scanlines && !multiple;
+                // Scanlines are read straight from the plane; rotating them costs nothing
+                final int decodeRotation = rotationFree && !useScanlines ? 0 : rotation;
+
+                final PlaneLuminanceSource fullSource = process(image, decodeRotation, lease);
+                final PlaneLuminanceSource luminanceSource = crop(image, fullSource,
+                                                                  decodeRotation);
+                setPointRotation(fullSource, rotation - decodeRotation);
+
+                Result result = null;
+                List<Result> results = List.of();
+                if (multiple) {
+                    setPointMapping(1, 1, window.left, window.top);
+                    results = decoder.decodeMultiple(luminanceSource);
+                    if (results.isEmpty()) {
+                        DecodeDeadline.check();
+                    }
+                } else if (useScanlines) {
+                    result = decodeScanlines(luminanceSource);
+                } else {
+                    result = decodeTracked(fullSource);
+                    if (result == null) {
+                        if (pyramidFactor > 1) {
+                            result = decodeCoarseToFine(image, fullSource, decodeRotation,
+                                                        lease);
+                        } else {
+                            setPointMapping(1, 1, window.left, window.top);
+                            result = decode(luminanceSource);
+                        }
+                    }
+                    track(fullSource, result);
+                }
+
+                if (result == null && !multiple
+                    && hasLinear && (rotation - decodeRotation) % 180 != 0
+                    && !tryHarder && !effort.contains(DecodeEffort.TryHarder)) {
+                    // The 1D readers only look along the rows of the sensor image, which
+                    // are the columns of the oriented image. Read the rows of the oriented
+                    // image (i.e. the sensor columns) directly from the plane.
+                    // With TRY_HARDER, the readers already retried the frame rotated.
+                    final PlaneLuminanceSource orientedSource = process(image, rotation, lease);
+                    setPointRotation(orientedSource, 0);
+                    result = decodeScanlines(crop(image, orientedSource, rotation));
+                }
+
+                final boolean found = result != null || !results.isEmpty();
+                if (duplicateThreshold > 0) {
+                    if (!found) {
+                        signature.setReference(now);
+                    } else {
+                        signature.clearReference();
+                    }
+                }
+
+                final List<ResultPoint> possibleResultPoints =
+                        governor != null || scheduler != null || pointChannel.hasListener()
+                        ? decoder.getPossibleResultPoints() : List.of();
+                if (scheduler != null && !multiple) {
+                    scheduler.onDecoded(result != null, !possibleResultPoints.isEmpty());
+                }
+                if (governor != null) {
+                    final long end = System.nanoTime();
+                    synchronized (governor) {
+                        governor.onAnalyzed(end - now,
+                                            found || !possibleResultPoints.isEmpty(),
+                                            end);
+                    }
+                }
+
+                if (!results.isEmpty()) {
+                    results.forEach(this::mapResultPoints);
+                    // all done; other frames still being decoded will be ignored
+                    singleResultFound.set(true);
+                    forwardResults(results, resultListener);
+                    return;
+                }
+
+                if (result != null && consensus != null
+                    && !consensus.accept(result, System.nanoTime())) {
+                    // Not confirmed yet; wait for the next frames to agree
+                    result = null;
+                }
+
+                if (result != null) {
+                    mapResultPoints(result);
+                    if (scanMode == ScanMode.Single) {
+                        // all done; other frames still being decoded will be ignored
+                        singleResultFound.set(true);
+                        forwardResult(result, frameSequence, resultListener);
+                        return;
+                    }
+                    forwardResult(result, frameSequence, resultListener);
+                }
+
+                if (pointChannel.hasListener()) {
+                    if (!possibleResultPoints.isEmpty()) {
+                        if (rotation % 180 == 0) {
+                            updatePoints(image.getWidth(), image.getHeight(),
+                                         possibleResultPoints);
+                        } else {
+                            //noinspection SuspiciousNameCombination
+                            updatePoints(image.getHeight(), image.getWidth(),
+                                         possibleResultPoints);
+                        }
+                    }
+                }
+
+            } catch (@NonNull final DecodeDeadline.ExpiredException ignore) {
+                // Out of time, or stopped; abandon the frame
+
+            } catch (@NonNull final Throwable e) {
+                // catching Throwable, as we see StackOverflowError
+                // on some devices.
+                mainExecutor.execute(() -> {
+                    resultListener.onError(e);
+                    BarcodeScanner.this.stop();
+                });
+            } finally {
+                deadline.finish();
+            }
         }
 
         /**
-         * Set a custom {@link DecoderFactory}.
-         * <p>
-         * If not set, a default factory will be created using the provided hints.
+         * Get the time since the frame was captured by the sensor.
          *
-         * @param decoderFactory to use
+         * @param image incoming image
          *
-         * @return this
+         * @return age in nanoseconds
+         */
+        private long getFrameAge(@NonNull final ImageProxy image) {
+            final long timestamp = image.getImageInfo().getTimestamp();
+            // System.nanoTime() is the uptime clock on Android
+            final long uptime = System.nanoTime();
+            final long realtime = SystemClock.elapsedRealtimeNanos();
+            if (!timestampBaseKnown) {
+                // Depending on the device, the sensor uses either clock. They differ by the
+                // time spent in deep sleep. The first frame is fresh, so it's (much) closer
+                // to its own clock; and if the clocks are close, either will do.
+                timestampsSinceBoot = Math.abs(realtime - timestamp)
+                                      < Math.abs(uptime - timestamp);
+                timestampBaseKnown = true;
+            }
+            return (timestampsSinceBoot ? realtime : uptime) - timestamp;
+        }
+
+        /**
+         * Map the points of a result to the oriented frame, in place.
+         *
+         * @param result to update
+         */
+        private void mapResultPoints(@NonNull final Result result) {
+            final ResultPoint[] resultPoints = result.getResultPoints();
+            if (resultPoints != null) {
+                for (int i = 0; i < resultPoints.length; i++) {
+                    resultPoints[i] = toOriented(toFullFrame(resultPoints[i]));
+                }
+            }
+        }
+
+        /**
+         * Check whether the scene is unchanged since the last frame
+         * which was decoded without a result.
+         *
+         * @param image incoming image
+         * @param now   the current {@link System#nanoTime()}
+         *
+         * @return {@code true} if the frame should be skipped
+         */
+        private boolean isDuplicate(@NonNull final ImageProxy image,
+                                    final long now) {
+            if (duplicateThreshold <= 0) {
+                return false;
+            }
+            final ImageProxy.PlaneProxy yPlane = image.getPlanes()[0];
+            signature.compute(yPlane.getBuffer(),
+                              image.getWidth(),
+                              image.getHeight(),
+                              yPlane.getRowStride(),
+                              yPlane.getPixelStride());
+            return signature.matchesReference(duplicateThreshold, forcedDecodeIntervalNanos, now);
+        }
+
+        /**
+         * Measure the quality of the frame if needed, and report it to the listener.
+         *
+         * @param image incoming image
+         * @param lease for the current frame
+         *
+         * @return {@code true} if the frame should be decoded
+         */
+        private boolean checkQuality(@NonNull final ImageProxy image,
+                                     @NonNull final FrameBufferPool.Lease lease) {
+            final boolean gate = minSharpness > 0 || maxClipped < 1;
+            final FrameQualityListener listener = frameQualityListener;
+            if (!gate && listener == null) {
+                return true;
+            }
+
+            final ImageProxy.PlaneProxy yPlane = image.getPlanes()[0];
+            // Measure the same area as we're going to decode
+            final FrameQuality quality = FrameQuality.measure(yPlane.getBuffer(),
+                                                              yPlane.getRowStride(),
+                                                              yPlane.getPixelStride(),
+                                                              sensorWindow.left,
+                                                              sensorWindow.top,
+                                                              sensorWindow.width(),
+                                                              sensorWindow.height(),
+                                                              lease);
+            final boolean acceptable = quality.isAcceptable(minSharpness, maxClipped);
+            if (listener != null) {
+                mainExecutor.execute(() -> listener.onFrameQuality(quality, acceptable));
+            }
+            return acceptable;
+        }
+
+        /**
+         * Wrap the Y plane of the image without copying it.
+         * The source is only valid until the lease is closed,
+         * which happens before the image itself is closed.
+         *
+         * @param image   incoming image
+         * @param degrees to rotate the image clockwise
+         * @param lease   for the current frame
+         *
+         * @return source
          */
         @NonNull
-        public Builder setDecoderFactory(@NonNull final DecoderFactory decoderFactory) {
-            this.decoderFactory = decoderFactory;
+        private PlaneLuminanceSource process(@NonNull final ImageProxy image,
+                                             final int degrees,
+                                             @NonNull final FrameBufferPool.Lease lease) {
+            // The image provided has format ImageFormat.YUV_420_888.
+            // so we only take the Y data from plane 0
+            final ImageProxy.PlaneProxy yPlane = image.getPlanes()[0];
+
+            return new PlaneLuminanceSource(
+                    yPlane.getBuffer(),
+                    image.getWidth(),
+                    image.getHeight(),
+                    yPlane.getRowStride(),
+                    yPlane.getPixelStride(),
+                    isImageFlipped,
+                    degrees,
+                    lease);
+        }
+
+        /**
+         * Set {@link #sensorWindow} to the scan window of the image;
+         * the full frame if there is no scan window.
+         *
+         * @param image incoming image
+         */
+        private void setSensorWindow(@NonNull final ImageProxy image) {
+            final int width = image.getWidth();
+            final int height = image.getHeight();
+
+            if (scanWindowFromPreview) {
+                sensorWindow.set(image.getCropRect());
+            } else {
+                sensorWindow.set(0, 0, width, height);
+            }
+            if (scanWindow < 1f) {
+                // A centred inset is the same before and after rotating
+                sensorWindow.inset(Math.round(sensorWindow.width() * (1f - scanWindow) / 2f),
+                                   Math.round(sensorWindow.height() * (1f - scanWindow) / 2f));
+            }
+            if (sensorWindow.isEmpty() || !sensorWindow.intersect(0, 0, width, height)) {
+                sensorWindow.set(0, 0, width, height);
+            }
+        }
+
+        /**
+         * Restrict the source to the scan window. No data is copied.
+         * <p>
+         * Sets {@link #window} to the area used; the full frame if there is no scan window.
+         *
+         * @param image   incoming image
+         * @param source  the full frame
+         * @param degrees the source was rotated clockwise
+         *
+         * @return the cropped source, or the original if there is nothing to crop
+         */
+        @NonNull
+        private PlaneLuminanceSource crop(@NonNull final ImageProxy image,
+                                          @NonNull final PlaneLuminanceSource source,
+                                          final int degrees) {
+            window.set(sensorWindow);
+            FrameGeometry.toOriented(window, image.getWidth(), image.getHeight(),
+                                     isImageFlipped, degrees);
+
+            if (window.width() == source.getWidth() && window.height() == source.getHeight()) {
+                return source;
+            }
+            return source.crop(window.left, window.top, window.width(), window.height());
+        }
+
+        /**
+         * Decode a few rows around the middle of the scan window; for 1D formats only.
+         * <p>
+         * The rows are read straight from the plane when the reader asks for them;
+         * nothing else of the frame is touched. When the frame needs rotating, the rows
+         * are columns of the plane, which are sampled directly as well.
+         * The middle row is the one under the laser line of the {@link TzwViewfinderView}
+         * when the scan window matches the preview.
+         *
+         * @param source the scan window of the frame
+         *
+         * @return a Result or {@code null}
+         */
+        @Nullable
+        private Result decodeScanlines(@NonNull final PlaneLuminanceSource source) {
+            final int height = source.getHeight();
+            final int count = Math.min(SCANLINES, height);
+            // Same spacing as the 1D readers use, but make sure all rows fit.
+            final int spacing = count > 1
+                                ? Math.max(1, Math.min(height / 32, (height - 1) / (count - 1)))
+                                : 1;
+            final int top = (height - 1 - (count - 1) * spacing) / 2;
+
+            setPointMapping(1, spacing, window.left, window.top + top);
+            return decode(source.sampleRows(top, count, spacing));
+        }
+
+        /**
+         * Decode a reduced resolution version of the scan window first.
+         * Only the scan window is read from the plane.
+         * Large codes, i.e. most codes scanned at close range, will decode at a fraction
+         * of the cost. If that fails, but we did find possible result points,
+         * we decode the full resolution frame, but only the area around those points.
+         * If no points were found at all, the frame is abandoned.
+         *
+         * @param image      incoming image
+         * @param fullSource the full frame
+         * @param degrees    the full frame was rotated clockwise
+         * @param lease      for the current frame
+         *
+         * @return a Result or {@code null}
+         */
+        @Nullable
+        private Result decodeCoarseToFine(@NonNull final ImageProxy image,
+                                          @NonNull final LuminanceSource fullSource,
+                                          final int degrees,
+                                          @NonNull final FrameBufferPool.Lease lease) {
+            // The scan window without the pixels the downsampling drops,
+            // so we know exactly where the coarse frame is in the full frame.
+            region.set(sensorWindow);
+            region.right -= region.width() % pyramidFactor;
+            region.bottom -= region.height() % pyramidFactor;
+            if (region.isEmpty()) {
+                return null;
+            }
+
+            final ImageProxy.PlaneProxy yPlane = image.getPlanes()[0];
+            final LuminanceSource coarseSource = PlaneLuminanceSource.downsample(
+                    yPlane.getBuffer(),
+                    yPlane.getRowStride(),
+                    yPlane.getPixelStride(),
+                    region.left,
+                    region.top,
+                    region.width(),
+                    region.height(),
+                    pyramidFactor,
+                    isImageFlipped,
+                    degrees,
+                    lease);
+
+            FrameGeometry.toOriented(region, image.getWidth(), image.getHeight(),
+                                     isImageFlipped, degrees);
+            setPointMapping(pyramidFactor, pyramidFactor, region.left, region.top);
+            final Result result = decode(coarseSource);
+            if (result != null) {
+                return result;
+            }
+
+            final List<ResultPoint> points = decoder.getPossibleResultPoints();
+            if (points.isEmpty() || !setRegion(points)) {
+                return null;
+            }
+
+            setPointMapping(1, 1, region.left, region.top);
+            return decode(fullSource.crop(region.left, region.top,
+                                          region.width(), region.height()));
+        }
+
+        /**
+         * Decode the region where the {@link #tracker} last saw a barcode.
+         * <p>
+         * Not tried when there is no such region, or when it covers most of the scan window
+         * anyhow; the caller decodes the full scan window instead.
+         *
+         * @param fullSource the full frame
+         *
+         * @return a Result or {@code null}
+         */
+        @Nullable
+        private Result decodeTracked(@NonNull final LuminanceSource fullSource) {
+            if (tracker == null
+                || !tracker.getRegion(fullSource.getWidth(), fullSource.getHeight(), region)
+                || !region.intersect(window)
+                || region.width() * region.height() * 4 > window.width() * window.height() * 3) {
+                return null;
+            }
+
+            setPointMapping(1, 1, region.left, region.top);
+            return decode(fullSource.crop(region.left, region.top,
+                                          region.width(), region.height()));
+        }
+
+        /**
+         * Let the {@link #tracker} (if used) know where the result, or the possible
+         * result points of the last decode, are.
+         *
+         * @param fullSource the full frame
+         * @param result     of the frame, or {@code null} if none
+         */
+        private void track(@NonNull final LuminanceSource fullSource,
+                           @Nullable final Result result) {
+            if (tracker == null) {
+                return;
+            }
+            final ResultPoint[] resultPoints = result != null ? result.getResultPoints() : null;
+            final List<ResultPoint> points = resultPoints != null && resultPoints.length > 0
+                                             ? Arrays.asList(resultPoints)
+                                             : decoder.getPossibleResultPoints();
+            // A single point is too likely to be noise
+            if (points.size() >= 2 && setRegion(points)) {
+                tracker.onFound(fullSource.getWidth(), fullSource.getHeight(), region);
+            } else {
+                tracker.onMissed();
+            }
+        }
+
+        /**
+         * Set the {@link #region} to the area around the given points,
+         * limited to the scan window.
+         *
+         * @param points found by the last decode
+         *
+         * @return {@code false} if the area is outside of the scan window
+         */
+        private boolean setRegion(@NonNull final List<ResultPoint> points) {
+            // The bounding box of the points in the full frame
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (final ResultPoint point : points) {
+                final ResultPoint p = toFullFrame(point);
+                minX = Math.min(minX, (int) p.getX());
+                minY = Math.min(minY, (int) p.getY());
+                maxX = Math.max(maxX, (int) p.getX());
+                maxY = Math.max(maxY, (int) p.getY());
+            }
+            region.set(minX, minY, maxX + 1, maxY + 1);
+
+            // A 1D code gives us points on a single line, hence the minimum margin.
+            final int margin = Math.max(Math.max(region.width(), region.height()) / 2,
+                                        Math.min(window.width(), window.height()) / 8);
+            region.inset(-margin, -margin);
+            return region.intersect(window);
+        }
+
+        /**
+         * Decode with the effort picked for the current frame.
+         *
+         * @param source to decode
+         *
+         * @return a Result or {@code null}
+         */
+        @Nullable
+        private Result decode(@NonNull final LuminanceSource source) {
+            final Result result = effort.isEmpty() ? decoder.decode(source)
+                                                   : decoder.decode(source, effort);
+            if (result == null) {
+                // In case a custom decoder swallowed the abort
+                DecodeDeadline.check();
+            }
+            return result;
+        }
+
+        /**
+         * Set how to map the points found by the next decode back to the full frame.
+         *
+         * @param scaleX  of the decoded frame relative to the full frame
+         * @param scaleY  of the decoded frame relative to the full frame
+         * @param offsetX of the decoded area in the full frame
+         * @param offsetY of the decoded area in the full frame
+         */
+        private void setPointMapping(final int scaleX,
+                                     final int scaleY,
+                                     final int offsetX,
+                                     final int offsetY) {
+            pointScaleX = scaleX;
+            pointScaleY = scaleY;
+            pointOffsetX = offsetX;
+            pointOffsetY = offsetY;
+        }
+
+        /**
+         * Set how to map the points from the decoded full frame to the oriented frame.
+         *
+         * @param fullSource the decoded full frame
+         * @param degrees    to rotate the decoded frame clockwise
+         */
+        private void setPointRotation(@NonNull final LuminanceSource fullSource,
+                                      final int degrees) {
+            pointFrameWidth = fullSource.getWidth();
+            pointFrameHeight = fullSource.getHeight();
+            pointRotation = degrees;
+        }
+
+        /**
+         * Map a point from the decoded full frame to the oriented frame.
+         *
+         * @param point to map
+         *
+         * @return the mapped point
+         */
+        @NonNull
+        private ResultPoint toOriented(@NonNull final ResultPoint point) {
+            return FrameGeometry.rotate(point, pointFrameWidth, pointFrameHeight, pointRotation);
+        }
+
+        /**
+         * Map a point found by the last decode back to the full frame.
+         *
+         * @param point to map
+         *
+         * @return the mapped point
+         */
+        @NonNull
+        private ResultPoint toFullFrame(@NonNull final ResultPoint point) {
+            if (pointScaleX == 1 && pointScaleY == 1 && pointOffsetX == 0 && pointOffsetY == 0) {
+                return point;
+            }
+            return new ResultPoint(point.getX() * pointScaleX + pointOffsetX,
+                                   point.getY() * pointScaleY + pointOffsetY);
+        }
+
+        /**
+         * When using the {@link DefaultDecoderFactory}, the zxing
+         * "MultiFormatReader" will send the possible result-points
+         * to the decoder during the above decoder.decode() call.
+         * When the decode() call is done (successful or failure),
+         * we take that collection of ResultPoint's and, after mapping them
+         * to the full frame and potentially mirroring the points,
+         * publish them for the user-settable listener.
+         * <p>
+         * The points are mapped into a reused array; nothing is allocated.
+         *
+         * @param width  of the full (oriented) frame
+         * @param height of the full (oriented) frame
+         * @param points the possible points found
+         */
+        private void updatePoints(final int width,
+                                  final int height,
+                                  @NonNull final List<ResultPoint> points) {
+            final int count = Math.min(points.size(), ResultPointChannel.MAX_POINTS);
+            for (int i = 0; i < count; i++) {
+                final ResultPoint point = points.get(i);
+                final int x = i * 2;
+                // i.e. toOriented(toFullFrame(point))
+                mappedPoints[x] = point.getX() * pointScaleX + pointOffsetX;
+                mappedPoints[x + 1] = point.getY() * pointScaleY + pointOffsetY;
+                FrameGeometry.rotate(mappedPoints, x, pointFrameWidth, pointFrameHeight,
+                                     pointRotation);
+                if (isImageFlipped) {
+                    mappedPoints[x] = width - mappedPoints[x];
+                }
+            }
+            pointChannel.publish(width, height, mappedPoints, count);
+        }
+    }
+
+    /**
+     * The builder prepares all/any arguments related to the actual barcode decoding.
+     */
+    @SuppressWarnings({"unused", "UnusedReturnValue"})
+    public static class Builder {
+        private final Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+
+        @Nullable
+        private DecoderFactory decoderFactory;
+        @Nullable
+        private ScanMode scanMode;
+        private float scanWindow = 1f;
+        private boolean scanWindowFromPreview;
+        private int pyramidFactor;
+        private boolean scanlineDecoding;
+        private boolean rotationFree;
+        @NonNull
+        private AnalysisResolution analysisResolution = AnalysisResolution.Default;
+        @Nullable
+        private ResolutionSelector analysisResolutionSelector;
+        private float minSharpness;
+        private float maxClipped = 1f;
+        private float duplicateThreshold;
+        private long forcedDecodeIntervalMs;
+        private float analysisBudget = 1f;
+        private int decoderThreads = 1;
+        @NonNull
+        private BinarizerStrategy binarizer = BinarizerStrategy.Hybrid;
+        private int decodeSchedulingStreak;
+        @Nullable
+        private FormatStatistics formatStatistics;
+        private int narrowAfterHits;
+        private long frameBudgetMs;
+        private long maxFrameAgeMs;
+        private int regionTrackingFrames;
+        @NonNull
+        private final Map<BarcodeFormat, Integer> consensusVotes =
+                new EnumMap<>(BarcodeFormat.class);
+        private long consensusWindowMs = 1000;
+
+        /**
+         * Set the {@link ScanMode}.
+         *
+         * @param mode to use
+         */
+        public void setScanMode(@NonNull final ScanMode mode) {
+            this.scanMode = mode;
+        }
+
+        /**
+         * Set a custom {@link DecoderFactory}.
+         * <p>
+         * If not set, a default factory will be created using the provided hints.
+         *
+         * @param decoderFactory to use
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setDecoderFactory(@NonNull final DecoderFactory decoderFactory) {
+            this.decoderFactory = decoderFactory;
+            return this;
+        }
+
+        /**
+         * Only decode the centre of each frame.
+         * <p>
+         * The decoder only looks at the given fraction of the width and the height,
+         * which greatly reduces the amount of work per frame.
+         * The user will need to aim at the centre of the preview.
+         *
+         * @param fraction of the frame to use; {@code 1} (the default) for the full frame.
+         *                 Values outside the range {@code (0..1]} are ignored.
+         *
+         * @return this
+         *
+         * @see #setScanWindowFromPreview(boolean)
+         */
+        @NonNull
+        public Builder setScanWindow(@FloatRange(from = 0, fromInclusive = false, to = 1)
+                                     final float fraction) {
+            if (fraction > 0 && fraction <= 1) {
+                this.scanWindow = fraction;
+            }
+            return this;
+        }
+
+        /**
+         * Only decode the part of each frame which is visible in the {@link PreviewView}.
+         * <p>
+         * If {@link #setScanWindow(float)} is set as well, the fraction is applied
+         * to the visible part.
+         *
+         * @param enabled flag
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setScanWindowFromPreview(final boolean enabled) {
+            this.scanWindowFromPreview = enabled;
+            return this;
+        }
+
+        /**
+         * Enable coarse-to-fine decoding.
+         * <p>
+         * Each frame is first decoded at a reduced resolution.
+         * Only if that fails, but possible result points were found, is the area
+         * around those points decoded at full resolution.
+         * This greatly reduces the cost of decoding large(r) barcodes,
+         * but small/distant barcodes must be picked up by the reduced resolution
+         * pass before they can be decoded.
+         *
+         * @param factor {@code 2} or {@code 4} to reduce the width and height by;
+         *               any other value disables this mode (the default).
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setPyramidDecoding(final int factor) {
+            this.pyramidFactor = factor == 2 || factor == 4 ? factor : 0;
+            return this;
+        }
+
+        /**
+         * Enable or disable scanline decoding; disabled by default.
+         * <p>
+         * When all formats set with {@link #setBarcodeFormats(List)} are 1D formats,
+         * e.g. {@link BarcodeFamily#PRODUCT}, only a few rows around the middle of the
+         * scan window are decoded. The full frame is never read.
+         * The barcode must cross the middle of the scan window (i.e. the laser line).
+         * <p>
+         * Only used if {@link #setDecoderFactory(DecoderFactory)} is <strong>NOT</strong> called.
+         * Not used with {@link #setTryHarder(boolean)}, which scans the full frame
+         * and retries it rotated by 90 degrees.
+         * Takes precedence over {@link #setPyramidDecoding(int)}.
+         *
+         * @param enabled flag
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setScanlineDecoding(final boolean enabled) {
+            this.scanlineDecoding = enabled;
+            return this;
+        }
+
+        /**
+         * Enable or disable rotation-free decoding; disabled by default.
+         * <p>
+         * Frames are decoded as delivered by the camera sensor, instead of rotating them
+         * to the display orientation first. 2D barcodes can be decoded in any orientation;
+         * result points are mapped to the display orientation afterwards.
+         * This avoids the rotated copy of each frame on devices locked in portrait.
+         * <p>
+         * 1D readers only scan along the rows of the sensor image. When the frame
+         * needs a 90 or 270 degree rotation, and no barcode was found, a few lines across
+         * the middle of the displayed frame are decoded as well; see
+         * {@link #setScanlineDecoding(boolean)}. With {@link #setTryHarder(boolean)},
+         * the 1D readers retry the rotated frame themselves, so this is skipped.
+         * When scanline decoding is used, this setting has no effect.
+         *
+         * @param enabled flag
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setRotationFreeDecoding(final boolean enabled) {
+            this.rotationFree = enabled;
+            return this;
+        }
+
+        /**
+         * Set the resolution of the frames being analysed.
+         * <p>
+         * The camera picks the closest resolution it supports.
+         * Lower resolutions decode faster; dense 2D barcodes need higher resolutions.
+         * Ignored if {@link #setAnalysisResolutionSelector(ResolutionSelector)} is called.
+         *
+         * @param resolution preset to use; {@link AnalysisResolution#Auto} picks a preset
+         *                   based on the formats set with {@link #setBarcodeFormats(List)}.
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setAnalysisResolution(@NonNull final AnalysisResolution resolution) {
+            this.analysisResolution = resolution;
+            return this;
+        }
+
+        /**
+         * Advanced usage. Set a custom selector for the resolution of the frames
+         * being analysed. Overrides {@link #setAnalysisResolution(AnalysisResolution)}.
+         *
+         * @param selector to use
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setAnalysisResolutionSelector(@NonNull final ResolutionSelector selector) {
+            this.analysisResolutionSelector = selector;
+            return this;
+        }
+
+        /**
+         * Skip decoding blurry or badly exposed frames.
+         * <p>
+         * The sharpness and exposure of the scan window of each frame are measured on
+         * a subsampled grid of pixels, which is much cheaper than a failed decode.
+         * Use a {@link FrameQualityListener} to find suitable values for your use case.
+         * Disabled by default.
+         *
+         * @param minSharpness the minimum {@link FrameQuality#getSharpness()};
+         *                     {@code 0} to accept any frame.
+         * @param maxClipped   the maximum {@link FrameQuality#getClipped()};
+         *                     {@code 1} to accept any frame.
+         *
+         * @return this
+         *
+         * @see BarcodeScanner#setFrameQualityListener(FrameQualityListener)
+         */
+        @NonNull
+        public Builder setFrameQualityGate(@FloatRange(from = 0) final float minSharpness,
+                                           @FloatRange(from = 0, to = 1) final float maxClipped) {
+            this.minSharpness = Math.max(0, minSharpness);
+            this.maxClipped = Math.min(1, maxClipped);
+            return this;
+        }
+
+        /**
+         * Skip frames which are (nearly) identical to the last frame decoded without a result.
+         * <p>
+         * A 16x16 thumbnail of each frame is compared with the one of the last failed frame.
+         * When the camera is pointing at an unchanged scene, e.g. a device resting on
+         * a counter, this avoids decoding the same scene over and over again.
+         * Disabled by default.
+         *
+         * @param threshold              the maximum mean difference of the thumbnails,
+         *                               in luminance levels; e.g. {@code 3}.
+         *                               {@code 0} to disable.
+         * @param forcedDecodeIntervalMs decode an unchanged scene anyhow
+         *                               once this amount of time has passed;
+         *                               e.g. {@code 1000}. {@code 0} to never decode
+         *                               an unchanged scene again.
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setSkipDuplicateFrames(
+                @FloatRange(from = 0) final float threshold,
+                @IntRange(from = 0) final long forcedDecodeIntervalMs) {
+            this.duplicateThreshold = Math.max(0, threshold);
+            this.forcedDecodeIntervalMs = Math.max(0, forcedDecodeIntervalMs);
+            return this;
+        }
+
+        /**
+         * Limit the fraction of time spent decoding.
+         * <p>
+         * The decode time of each frame, and the rate at which frames arrive, are measured.
+         * Frames are then skipped as needed to stay within the budget; i.e. only every
+         * 2nd, 3rd, ... frame is analysed. As soon as (possible) result points are found,
+         * every frame is analysed again for a while.
+         * This keeps low-end devices from overheating in {@link ScanMode#Continuous} mode.
+         *
+         * @param cpuFraction the fraction of time to spend decoding; e.g. {@code 0.5}.
+         *                    {@code 1} (the default) to analyse every frame.
+         *                    Values outside the range {@code (0..1]} are ignored.
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setAnalysisBudget(@FloatRange(from = 0, fromInclusive = false, to = 1)
+                                         final float cpuFraction) {
+            if (cpuFraction > 0 && cpuFraction <= 1) {
+                this.analysisBudget = cpuFraction;
+            }
+            return this;
+        }
+
+        /**
+         * Only spend the effort of {@link #setTryHarder(boolean)} and
+         * {@link #setAlsoTryInverted(boolean)} on frames where it's likely to help.
+         * <p>
+         * Frames are decoded without those hints, until the given number of frames in a row
+         * failed to decode while possible result points were found. The expensive variants
+         * are then spread over the next frames: the inverted image on odd frames,
+         * and try-harder on every 4th frame. After a result, or the same number of frames
+         * in a row without possible result points, the cheap decoding is resumed.
+         * <p>
+         * Not used with a custom {@link DecoderFactory} or in {@link ScanMode#Multiple}.
+         *
+         * @param failureStreak the number of promising failures in a row before escalating;
+         *                      {@code 0} (the default) to use the hints on all frames.
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setDecodeScheduling(@IntRange(from = 0) final int failureStreak) {
+            this.decodeSchedulingStreak = Math.max(0, failureStreak);
+            return this;
+        }
+
+        /**
+         * Bound the time spent on a single frame.
+         * <p>
+         * Decoding is aborted when the budget is used up; the next frame gets a fresh budget.
+         * Independent of this, {@link BarcodeScanner#stop()} always aborts decoding.
+         * <p>
+         * Frames which are older than the maximum age when decoding could start
+         * are dropped; this happens when decoding can't keep up with the camera,
+         * and frames are queued; e.g. with {@link #setDecoderThreads(int)}, or when a frame
+         * was held by the camera while the previous one was being decoded.
+         *
+         * @param frameBudgetMs the time budget for a frame, in milliseconds;
+         *                      {@code 0} (the default) for no limit.
+         * @param maxFrameAgeMs the maximum age of a frame, measured from the time it was
+         *                      captured by the sensor, in milliseconds;
+         *                      {@code 0} (the default) for no limit.
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setDecodeDeadline(@IntRange(from = 0) final long frameBudgetMs,
+                                         @IntRange(from = 0) final long maxFrameAgeMs) {
+            this.frameBudgetMs = Math.max(0, frameBudgetMs);
+            this.maxFrameAgeMs = Math.max(0, maxFrameAgeMs);
+            return this;
+        }
+
+        /**
+         * Try the region where a barcode was last seen first.
+         * <p>
+         * When a frame yields a barcode, or a cluster of possible result points
+         * (e.g. the finder patterns of a QR code which could not be decoded yet),
+         * the next frames first decode the area around those points at full resolution.
+         * If that fails, the full scan window is decoded as usual.
+         * The region follows the points found in each frame, and is forgotten after
+         * the given number of frames without any.
+         * <p>
+         * Not used in {@link ScanMode#Multiple}, or with {@link #setScanlineDecoding(boolean)}
+         * when all formats are 1D formats.
+         *
+         * @param holdFrames the number of frames to keep trying a region after it was
+         *                   last seen; {@code 0} (the default) to disable.
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setRegionTracking(@IntRange(from = 0) final int holdFrames) {
+            this.regionTrackingFrames = Math.max(0, holdFrames);
+            return this;
+        }
+
+        /**
+         * Only deliver a 1D barcode after it was decoded from a number of frames.
+         * <p>
+         * A damaged 1D barcode can be misread, which is why {@link #setTryHarder(boolean)}
+         * and check digit hints are often used. A misread is rarely repeated exactly,
+         * so requiring a few agreeing reads lets the cheap decoder settings be used instead,
+         * at the cost of a short delay. 2D barcodes have their own error correction,
+         * and are still delivered on the first read;
+         * see {@link #setConsensus(BarcodeFormat, int)} to change this per format.
+         * <p>
+         * Not used in {@link ScanMode#Multiple}.
+         *
+         * @param linearVotes the number of agreeing reads needed for all 1D formats;
+         *                    {@code 1} (the default) to deliver the first read.
+         * @param windowMs    the time in which the reads must be made, in milliseconds;
+         *                    the default is 1000.
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setConsensus(@IntRange(from = 1) final int linearVotes,
+                                    @IntRange(from = 1) final long windowMs) {
+            for (final BarcodeFormat format : BarcodeFormat.values()) {
+                if (BarcodeFamily.isLinear(format)) {
+                    setConsensus(format, linearVotes);
+                }
+            }
+            if (windowMs > 0) {
+                this.consensusWindowMs = windowMs;
+            }
+            return this;
+        }
+
+        /**
+         * Set the number of agreeing reads needed for a single format.
+         * <p>
+         * Overrides the number set by {@link #setConsensus(int, long)} for this format,
+         * if called after it.
+         *
+         * @param format to set
+         * @param votes  the number of agreeing reads needed;
+         *               {@code 1} (the default for 2D formats) to deliver the first read.
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setConsensus(@NonNull final BarcodeFormat format,
+                                    @IntRange(from = 1) final int votes) {
+            if (votes > 1) {
+                consensusVotes.put(format, votes);
+            } else {
+                consensusVotes.remove(format);
+            }
+            return this;
+        }
+
+        /**
+         * Try the readers for the most frequently found formats first.
+         * <p>
+         * Without this, the readers are always tried in the same order, and every frame
+         * which does not contain the first format pays for the failed attempts.
+         * <p>
+         * Optionally, once the same format was found a number of times in a row,
+         * only the reader for that format is tried; except on every 16th frame,
+         * which tries all of them to pick up a change of format.
+         * <p>
+         * Not used with a custom {@link DecoderFactory}.
+         *
+         * @param statistics      to record the hits in, or {@code null} to disable.
+         *                        Pass the same instance to the next scanner, or persist
+         *                        its {@link FormatStatistics#getHitCounts()},
+         *                        to keep learning across sessions.
+         * @param narrowAfterHits only try the format found this many times in a row;
+         *                        {@code 0} to never narrow down.
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setFormatTuning(@Nullable final FormatStatistics statistics,
+                                       @IntRange(from = 0) final int narrowAfterHits) {
+            this.formatStatistics = statistics;
+            this.narrowAfterHits = Math.max(0, narrowAfterHits);
+            return this;
+        }
+
+        /**
+         * Set how the {@link DefaultDecoder} converts the luminance to black and white.
+         * <p>
+         * Not used with a custom {@link DecoderFactory}.
+         *
+         * @param binarizer strategy; the default is {@link BinarizerStrategy#Hybrid}
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setBinarizer(@NonNull final BinarizerStrategy binarizer) {
+            this.binarizer = binarizer;
+            return this;
+        }
+
+        /**
+         * Decode multiple frames concurrently.
+         * <p>
+         * Each thread uses its own {@link Decoder}, created by the {@link DecoderFactory}.
+         * Frames arriving while all threads are busy are dropped.
+         * Results are delivered in frame order; a result from a frame older than
+         * the last delivered result is dropped.
+         * <p>
+         * Useful when decoding is CPU bound, e.g. with {@link DecodeHintType#TRY_HARDER},
+         * on devices with multiple (big) cores.
+         *
+         * @param threads the number of frames to decode concurrently;
+         *                {@code 1} (the default) to decode one frame at a time.
+         *                Limited to the number of available processors.
+         *
+         * @return this
+         */
+        @NonNull
+        public Builder setDecoderThreads(@IntRange(from = 1) final int threads) {
+            this.decoderThreads = Math.max(1, Math.min(
+                    threads, Runtime.getRuntime().availableProcessors()));
             return this;
         }
 
@@ -0,0 +1,75 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.NonNull;
+
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * How the {@link DefaultDecoder} converts the luminance to black and white.
+ * <p>
+ * The 1D readers only read single rows, for which both binarizers use the same
+ * (global histogram) algorithm. The choice matters for the 2D readers:
+ * {@link HybridBinarizer} uses a local threshold, which copes with shadows and
+ * glare but costs more than the single threshold of {@link GlobalHistogramBinarizer}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public enum BinarizerStrategy {
+    /**
+     * Always use a {@link HybridBinarizer}; this is the default.
+     */
+    Hybrid(0),
+    /**
+     * Always use a {@link GlobalHistogramBinarizer}.
+     * The cheapest option; fine for evenly lit barcodes.
+     */
+    Global(1),
+    /**
+     * Pick a binarizer for each frame.
+     * <p>
+     * Frames with an uneven white level (shadows, glare on glossy labels) start with the
+     * {@link HybridBinarizer}. Other frames start with the binarizer which decoded
+     * the last barcode, initially the {@link GlobalHistogramBinarizer}.
+     * If that fails, but possible result points were found, the other binarizer is tried.
+     * <p>
+     * When only 1D formats are decoded, this is the same as {@link #Global}.
+     */
+    Adaptive(2);
+
+    private final int mode;
+
+    BinarizerStrategy(final int mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Helper method for converting a previously stored in from {@link #getAsInt()}
+     * back to the enum value.
+     *
+     * @param mode to lookup
+     *
+     * @return enum value
+     */
+    @NonNull
+    public static BinarizerStrategy getStrategy(final int mode) {
+        switch (mode) {
+            case 1:
+                return Global;
+            case 2:
+                return Adaptive;
+            case 0:
+            default:
+                return Hybrid;
+        }
+    }
+
+    /**
+     * Helper method to retrieve the int value.
+     * e.g. for storing in Preferences.
+     *
+     * @return int
+     */
+    public int getAsInt() {
+        return mode;
+    }
+}
@@ -0,0 +1,102 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lets a running decode be aborted when the frame used up its time budget,
+ * or when the scanner was stopped.
+ * <p>
+ * ZXing has no means to cancel a decode, so we check at the points where it calls back
+ * into our code: {@link com.google.zxing.LuminanceSource#getRow(int, byte[])},
+ * {@link com.google.zxing.LuminanceSource#getMatrix()} and
+ * {@link com.google.zxing.ResultPointCallback#foundPossibleResultPoint}.
+ * When expired, {@link #check()} throws an {@link ExpiredException},
+ * which unwinds the reader.
+ * <p>
+ * Each analyzer owns an instance, which is made current for its thread while a frame is
+ * being decoded. The {@link #check()} is a no-op on any other thread.
+ */
+final class DecodeDeadline {
+
+    private static final ThreadLocal<DecodeDeadline> CURRENT = new ThreadLocal<>();
+
+    /** Incremented by the scanner when stopped; any decode started before is aborted. */
+    @NonNull
+    private final AtomicInteger generation;
+    /** The time budget for a frame; {@code 0} for none. */
+    private final long budgetNanos;
+
+    private int startGeneration;
+    private long deadline;
+
+    /**
+     * Constructor.
+     *
+     * @param generation  incremented to abort all running decodes
+     * @param budgetNanos the time budget for a frame; {@code 0} for none
+     */
+    DecodeDeadline(@NonNull final AtomicInteger generation,
+                   final long budgetNanos) {
+        this.generation = generation;
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * Check whether the decode on the current thread should be aborted.
+     *
+     * @throws ExpiredException if so
+     */
+    static void check() {
+        final DecodeDeadline current = CURRENT.get();
+        if (current != null && current.isExpired()) {
+            throw ExpiredException.INSTANCE;
+        }
+    }
+
+    /**
+     * Start decoding a frame on the current thread.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    void start(final long now) {
+        startGeneration = generation.get();
+        deadline = now + budgetNanos;
+        CURRENT.set(this);
+    }
+
+    /**
+     * Done decoding the frame on the current thread.
+     */
+    void finish() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Check whether the current frame should be abandoned.
+     *
+     * @return {@code true} if the budget is used up, or the scanner was stopped
+     */
+    boolean isExpired() {
+        return generation.get() != startGeneration
+               || budgetNanos > 0 && System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * Thrown to unwind a decode. Shared, and without a stack trace, as it's thrown
+     * for control flow only.
+     */
+    static final class ExpiredException
+            extends RuntimeException {
+
+        private static final long serialVersionUID = -2318463651257707411L;
+
+        @NonNull
+        static final ExpiredException INSTANCE = new ExpiredException();
+
+        private ExpiredException() {
+            super("Decode deadline expired", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import com.google.zxing.DecodeHintType;
+
+/**
+ * Extra (expensive) work a {@link Decoder} can be asked to do for a single frame.
+ *
+ * @see Decoder#decode(com.google.zxing.LuminanceSource, java.util.Set)
+ * @see BarcodeScanner.Builder#setDecodeScheduling(int)
+ */
+@SuppressWarnings("WeakerAccess")
+public enum DecodeEffort {
+    /**
+     * Also try the inverted image, as per {@link DecodeHintType#ALSO_INVERTED}.
+     */
+    Inverted,
+    /**
+     * Spend more time to find a barcode, as per {@link DecodeHintType#TRY_HARDER}.
+     */
+    TryHarder
+}
@@ -0,0 +1,96 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.NonNull;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Decides how much effort to spend on each frame.
+ * <p>
+ * Frames are decoded the cheap way, until a number of frames in a row failed while
+ * the decoder did find possible result points; i.e. there seems to be a barcode,
+ * but it's a hard one. From then on the expensive variants are interleaved across
+ * frames: the inverted image on odd frames, and {@link DecodeEffort#TryHarder} on
+ * every 4th frame. A result, or the same number of frames in a row without any
+ * possible result points, goes back to the cheap way.
+ * <p>
+ * Not thread-safe; owned by the analyzer.
+ */
+final class DecodeScheduler {
+
+    private static final Set<DecodeEffort> CHEAP = EnumSet.noneOf(DecodeEffort.class);
+    private static final int TRY_HARDER_INTERVAL = 4;
+
+    /** The number of frames in a row needed to switch. */
+    private final int streak;
+    @NonNull
+    private final Set<DecodeEffort> inverted;
+    @NonNull
+    private final Set<DecodeEffort> tryHarder;
+
+    private boolean escalated;
+    /** The number of frames in a row which point to switching. */
+    private int count;
+    /** The number of frames decoded since we escalated. */
+    private int frame;
+
+    /**
+     * Constructor.
+     *
+     * @param streak  the number of failures in a row before we escalate
+     * @param allowed the efforts which may be used
+     */
+    DecodeScheduler(final int streak,
+                    @NonNull final Set<DecodeEffort> allowed) {
+        this.streak = streak;
+        inverted = allowed.contains(DecodeEffort.Inverted)
+                   ? EnumSet.of(DecodeEffort.Inverted) : CHEAP;
+        tryHarder = allowed.contains(DecodeEffort.TryHarder)
+                    ? EnumSet.of(DecodeEffort.TryHarder) : CHEAP;
+    }
+
+    /**
+     * Get the effort to spend on the next frame.
+     *
+     * @return efforts; must not be modified
+     */
+    @NonNull
+    Set<DecodeEffort> next() {
+        if (!escalated) {
+            return CHEAP;
+        }
+        final int n = frame++;
+        if (n % TRY_HARDER_INTERVAL == 0 && tryHarder != CHEAP) {
+            return tryHarder;
+        }
+        if (n % 2 == 1) {
+            return inverted;
+        }
+        return CHEAP;
+    }
+
+    /**
+     * Called after a frame was decoded.
+     *
+     * @param success   {@code true} if a result was found
+     * @param promising {@code true} if possible result points were found
+     */
+    void onDecoded(final boolean success,
+                   final boolean promising) {
+        if (success) {
+            escalated = false;
+            count = 0;
+        } else if (escalated != promising) {
+            // Another frame pointing to a switch
+            count++;
+            if (count >= streak) {
+                escalated = promising;
+                count = 0;
+                frame = 0;
+            }
+        } else {
+            count = 0;
+        }
+    }
+}
@@ -8,8 +8,8 @@ import com.google.zxing.Result;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.ResultPointCallback;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Either let the scanner use the default implementation {@link DefaultDecoder},
@@ -32,9 +32,52 @@ public interface Decoder
     Result decode(@NonNull LuminanceSource source);
 
     /**
-     * Call immediately after {@link #decode(LuminanceSource)}, from the same thread.
+     * Given an image source, attempt to decode the barcode,
+     * spending extra effort on this source only.
      * <p>
-     * The result is undefined while {@link #decode(LuminanceSource)} is running.
+     * Must not raise an exception.
+     * <p>
+     * Optional to implement, this default implementation ignores the effort.
+     *
+     * @param source to decode
+     * @param effort the extra work to do on top of the normal decode
+     *
+     * @return a Result or {@code null}
+     *
+     * @see BarcodeScanner.Builder#setDecodeScheduling(int)
+     */
+    @Nullable
+    default Result decode(@NonNull final LuminanceSource source,
+                          @NonNull final Set<DecodeEffort> effort) {
+        return decode(source);
+    }
+
+    /**
+     * Given an image source, attempt to decode all barcodes in it.
+     * Used in {@link ScanMode#Multiple}.
+     * <p>
+     * Must not raise an exception.
+     * <p>
+     * Optional to implement, this default implementation returns
+     * the single result of {@link #decode(LuminanceSource)}, if any.
+     *
+     * @param source to decode
+     *
+     * @return a list with all results found; can be empty
+     */
+    @NonNull
+    default List<Result> decodeMultiple(@NonNull final LuminanceSource source) {
+        final Result result = decode(source);
+        return result != null ? List.of(result) : List.of();
+    }
+
+    /**
+     * Call immediately after {@link #decode(LuminanceSource)}
+     * or {@link #decodeMultiple(LuminanceSource)}, from the same thread.
+     * <p>
+     * The result is undefined while decoding is running.
+     * The list is only valid until the next decode, and must not be modified;
+     * implementations can return a view of their own list.
      * <p>
      * Optional to implement, this default implementation returns an empty list.
      *
@@ -42,7 +85,7 @@ public interface Decoder
      */
     @NonNull
     default List<ResultPoint> getPossibleResultPoints() {
-        return new ArrayList<>();
+        return List.of();
     }
 
     /**
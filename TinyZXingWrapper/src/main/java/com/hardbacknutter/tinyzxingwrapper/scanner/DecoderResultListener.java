@@ -5,6 +5,8 @@ import androidx.annotation.UiThread;
 
 import com.google.zxing.Result;
 
+import java.util.List;
+
 /**
  * The {@link BarcodeScanner} will call the methods of this interface
  * when a scan is decoded.
@@ -19,6 +21,19 @@ public interface DecoderResultListener {
     @UiThread
     void onResult(@NonNull Result result);
 
+    /**
+     * One or more barcodes were successfully decoded from a single frame.
+     * Only called in {@link ScanMode#Multiple}.
+     * <p>
+     * This default implementation calls {@link #onResult(Result)} for each result.
+     *
+     * @param results from the scanner; never empty
+     */
+    @UiThread
+    default void onMultipleResults(@NonNull final List<Result> results) {
+        results.forEach(this::onResult);
+    }
+
     /**
      * Decoding failed.
      *
@@ -1,5 +1,8 @@
 package com.hardbacknutter.tinyzxingwrapper.scanner;
 
+import androidx.annotation.NonNull;
+
+import com.google.zxing.ResultPoint;
 import com.google.zxing.ResultPointCallback;
 
 /**
@@ -20,4 +23,29 @@ public interface DecoderResultPointsListener
                               final int height) {
         // do nothing by default
     }
+
+    /**
+     * Receive the possible result points of a frame.
+     * <p>
+     * Called on the main thread, at most once per display frame;
+     * points of frames decoded in between are dropped.
+     * <p>
+     * Override to use the points without allocating a {@link ResultPoint} for each.
+     * The default implementation calls {@link #setImageSize(int, int)} and
+     * {@link #foundPossibleResultPoint(ResultPoint)} for each point.
+     *
+     * @param width  of the scan
+     * @param height of the scan
+     * @param points x,y pairs; only valid during this call
+     * @param count  the number of points
+     */
+    default void onResultPoints(final int width,
+                                final int height,
+                                @NonNull final float[] points,
+                                final int count) {
+        setImageSize(width, height);
+        for (int i = 0; i < count; i++) {
+            foundPossibleResultPoint(new ResultPoint(points[i * 2], points[i * 2 + 1]));
+        }
+    }
 }
@@ -4,15 +4,27 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
 import com.google.zxing.LuminanceSource;
 import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
 import com.google.zxing.Reader;
 import com.google.zxing.Result;
 import com.google.zxing.ResultPoint;
+import com.google.zxing.common.GlobalHistogramBinarizer;
 import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+import com.google.zxing.qrcode.QRCodeReader;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The default implementation of a {@link Decoder}.
@@ -21,9 +33,60 @@ import java.util.List;
 public class DefaultDecoder
         implements Decoder {
 
+    /** {@link BinarizerStrategy#Adaptive}: the source is checked in a grid of cells. */
+    private static final int GRID = 4;
+    /**
+     * {@link BinarizerStrategy#Adaptive}: the maximum difference in the white level
+     * of the cells for which a single threshold still works.
+     */
+    private static final int UNEVEN_WHITE_LEVEL = 64;
+
     @NonNull
     protected final Reader reader;
     protected final List<ResultPoint> points = new ArrayList<>();
+    /** Returned by {@link #getPossibleResultPoints()}; a read-only view of the points. */
+    @NonNull
+    private final List<ResultPoint> pointsView = Collections.unmodifiableList(points);
+    /**
+     * The hints passed to the reader for each decode.
+     * Not used for a {@link MultiFormatReader}, which is configured up front.
+     * Also used as the base for {@link DecodeEffort#TryHarder}.
+     */
+    @Nullable
+    protected final Map<DecodeHintType, ?> hints;
+    /** Whether to retry with the inverted source if the normal one fails. */
+    protected final boolean alsoInverted;
+    /** How to binarize the source. */
+    @NonNull
+    protected final BinarizerStrategy binarizer;
+    /** Created when first needed by {@link #decodeMultiple(LuminanceSource)}. */
+    @Nullable
+    private MultipleBarcodeReader multipleReader;
+
+    /**
+     * {@link BinarizerStrategy#Adaptive} only: whether the {@link GlobalHistogramBinarizer}
+     * decoded the last barcode, or the {@link HybridBinarizer}.
+     */
+    private boolean globalWon = true;
+    /** Reused to sample the rows of the source. */
+    @Nullable
+    private byte[] row;
+    /** Reused to hold the white level of a band of cells. */
+    private final int[] white = new int[GRID];
+    /**
+     * Reused by each {@link ReusableHybridBinarizer}; a decode is done with the matrix
+     * before the next one binarizes.
+     */
+    @NonNull
+    private final ReusableHybridBinarizer.Buffers binarizerBuffers =
+            new ReusableHybridBinarizer.Buffers();
+
+    /** Created when first needed by {@link DecodeEffort#TryHarder}. */
+    @Nullable
+    private Map<DecodeHintType, Object> tryHarderHints;
+    /** Created when first needed by {@link DecodeEffort#TryHarder}. */
+    @Nullable
+    private MultiFormatReader tryHarderReader;
 
     /**
      * Create a new Decoder with the specified Reader.
@@ -31,17 +94,213 @@ public class DefaultDecoder
      * @param reader the reader
      */
     protected DefaultDecoder(@NonNull final Reader reader) {
+        this(reader, false);
+    }
+
+    /**
+     * Create a new Decoder with the specified Reader.
+     * <p>
+     * The {@link com.google.zxing.DecodeHintType#ALSO_INVERTED} hint should
+     * <strong>not</strong> be passed to the reader when {@code alsoInverted} is set,
+     * or the inverted image will be decoded twice.
+     *
+     * @param reader       the reader
+     * @param alsoInverted {@code true} to retry with {@link LuminanceSource#invert()}
+     *                     if the normal source could not be decoded.
+     */
+    protected DefaultDecoder(@NonNull final Reader reader,
+                             final boolean alsoInverted) {
+        this(reader, null, alsoInverted);
+    }
+
+    /**
+     * Create a new Decoder with the specified Reader.
+     *
+     * @param reader       the reader
+     * @param hints        (optional) to pass to the reader for each decode.
+     *                     The map is used as-is, i.e. not copied.
+     * @param alsoInverted {@code true} to retry with {@link LuminanceSource#invert()}
+     *                     if the normal source could not be decoded.
+     *
+     * @see #DefaultDecoder(Reader, boolean)
+     */
+    protected DefaultDecoder(@NonNull final Reader reader,
+                             @Nullable final Map<DecodeHintType, ?> hints,
+                             final boolean alsoInverted) {
+        this(reader, hints, alsoInverted, BinarizerStrategy.Hybrid);
+    }
+
+    /**
+     * Create a new Decoder with the specified Reader.
+     *
+     * @param reader       the reader
+     * @param hints        (optional) to pass to the reader for each decode.
+     *                     The map is used as-is, i.e. not copied.
+     * @param alsoInverted {@code true} to retry with {@link LuminanceSource#invert()}
+     *                     if the normal source could not be decoded.
+     * @param binarizer    how to binarize the source
+     *
+     * @see #DefaultDecoder(Reader, boolean)
+     */
+    protected DefaultDecoder(@NonNull final Reader reader,
+                             @Nullable final Map<DecodeHintType, ?> hints,
+                             final boolean alsoInverted,
+                             @NonNull final BinarizerStrategy binarizer) {
         this.reader = reader;
+        this.hints = hints;
+        this.alsoInverted = alsoInverted;
+        this.binarizer = binarizer;
     }
 
+    /**
+     * Decode the given source.
+     * <p>
+     * If enabled, the inverted source is tried next. Our own sources return a cheap view
+     * for {@link LuminanceSource#invert()} which reuses the data of the original.
+     * Unlike {@link MultiFormatReader} (which flips the black matrix for the inverted pass),
+     * this also works for the 1D readers which only look at single rows.
+     *
+     * @param source to decode
+     *
+     * @return a Result or {@code null} on any error
+     */
     @Override
     @Nullable
     public Result decode(@NonNull final LuminanceSource source) {
-        return decode(toBitmap(source));
+        return decode(source, false, alsoInverted);
+    }
+
+    /**
+     * Decode the given source, spending extra effort on this source only.
+     * <p>
+     * {@link DecodeEffort#TryHarder} adds {@link DecodeHintType#TRY_HARDER} to the hints
+     * passed to the constructor. {@link DecodeEffort#Inverted} tries the inverted source
+     * as if {@link #alsoInverted} was set.
+     *
+     * @param source to decode
+     * @param effort the extra work to do on top of the normal decode
+     *
+     * @return a Result or {@code null} on any error
+     */
+    @Override
+    @Nullable
+    public Result decode(@NonNull final LuminanceSource source,
+                         @NonNull final Set<DecodeEffort> effort) {
+        return decode(source,
+                      effort.contains(DecodeEffort.TryHarder),
+                      alsoInverted || effort.contains(DecodeEffort.Inverted));
+    }
+
+    @Nullable
+    private Result decode(@NonNull final LuminanceSource source,
+                          final boolean tryHarder,
+                          final boolean inverted) {
+        if (binarizer == BinarizerStrategy.Adaptive) {
+            return decodeAdaptive(source, tryHarder, inverted);
+        }
+        points.clear();
+        final Result result = decodeBitmap(toBitmap(source), tryHarder);
+        if (result != null || !inverted) {
+            return result;
+        }
+        // Keep the possible points from the normal pass
+        return decodeBitmap(toBitmap(source.invert()), tryHarder);
+    }
+
+    /**
+     * Decode with the binarizer picked for this frame, falling back to the other one
+     * if that fails but the frame looks promising.
+     *
+     * @param source    to decode
+     * @param tryHarder {@code true} to add {@link DecodeHintType#TRY_HARDER}
+     * @param inverted  {@code true} to try the inverted source as well
+     *
+     * @return a Result or {@code null} on any error
+     */
+    @Nullable
+    private Result decodeAdaptive(@NonNull final LuminanceSource source,
+                                  final boolean tryHarder,
+                                  final boolean inverted) {
+        final boolean global = pickGlobal(source);
+        points.clear();
+        Result result = decodeBitmap(toBitmap(source, global), tryHarder);
+        if (result != null) {
+            globalWon = global;
+            return result;
+        }
+        // Only worth the cost if the reader found something
+        if (!points.isEmpty()) {
+            result = decodeBitmap(toBitmap(source, !global), tryHarder);
+            if (result != null) {
+                globalWon = !global;
+                return result;
+            }
+        }
+        if (inverted) {
+            return decodeBitmap(toBitmap(source.invert(), global), tryHarder);
+        }
+        return null;
+    }
+
+    /**
+     * Pick the binarizer to try first; {@link BinarizerStrategy#Adaptive} only.
+     *
+     * @param source to decode
+     *
+     * @return {@code true} for the {@link GlobalHistogramBinarizer},
+     *         {@code false} for the {@link HybridBinarizer}
+     */
+    private boolean pickGlobal(@NonNull final LuminanceSource source) {
+        return globalWon && !isUnevenlyLit(source);
+    }
+
+    /**
+     * Check whether the white level varies a lot across the source; a single
+     * threshold will then turn parts of the barcode all black or all white.
+     * <p>
+     * The source is divided in a grid of cells, and the brightest pixel of each cell is
+     * taken as its white level. Only a few rows per cell are looked at.
+     *
+     * @param source to check
+     *
+     * @return {@code true} if the source needs a local threshold
+     */
+    private boolean isUnevenlyLit(@NonNull final LuminanceSource source) {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        if (width < GRID || height < GRID) {
+            return false;
+        }
+        int minWhite = 255;
+        int maxWhite = 0;
+        for (int band = 0; band < GRID; band++) {
+            Arrays.fill(white, 0);
+            // Two rows, at 1/3 and 2/3 of the band
+            for (int r = 1; r <= 2; r++) {
+                final int y = (band * 3 + r) * height / (GRID * 3);
+                row = source.getRow(y, row);
+                for (int x = 0; x < width; x++) {
+                    final int cell = x * GRID / width;
+                    white[cell] = Math.max(white[cell], row[x] & 0xFF);
+                }
+            }
+            for (final int w : white) {
+                minWhite = Math.min(minWhite, w);
+                maxWhite = Math.max(maxWhite, w);
+            }
+        }
+        return maxWhite - minWhite > UNEVEN_WHITE_LEVEL;
     }
 
     /**
      * Given an image source, convert to a binary bitmap.
+     * <p>
+     * Uses a {@link GlobalHistogramBinarizer} for {@link BinarizerStrategy#Global},
+     * and a {@link HybridBinarizer} otherwise.
+     * <p>
+     * The latter is a {@link ReusableHybridBinarizer}, which does not allocate a new
+     * {@link com.google.zxing.common.BitMatrix} for each frame. The bitmap returned is only
+     * valid until the next call.
      *
      * @param source the image source
      *
@@ -49,7 +308,25 @@ public class DefaultDecoder
      */
     @NonNull
     protected BinaryBitmap toBitmap(@NonNull final LuminanceSource source) {
-        return new BinaryBitmap(new HybridBinarizer(source));
+        return toBitmap(source, binarizer == BinarizerStrategy.Global);
+    }
+
+    /**
+     * Given an image source, convert to a binary bitmap.
+     *
+     * @param source the image source
+     * @param global {@code true} to use a {@link GlobalHistogramBinarizer},
+     *               {@code false} for a {@link HybridBinarizer}
+     *
+     * @return a BinaryBitmap
+     */
+    @NonNull
+    protected BinaryBitmap toBitmap(@NonNull final LuminanceSource source,
+                                    final boolean global) {
+        if (global) {
+            return new BinaryBitmap(new GlobalHistogramBinarizer(source));
+        }
+        return new BinaryBitmap(new ReusableHybridBinarizer(source, binarizerBuffers));
     }
 
     /**
@@ -62,30 +339,154 @@ public class DefaultDecoder
     @Nullable
     protected Result decode(@NonNull final BinaryBitmap bitmap) {
         points.clear();
+        return decodeBitmap(bitmap, false);
+    }
+
+    @Nullable
+    private Result decodeBitmap(@NonNull final BinaryBitmap bitmap,
+                                final boolean tryHarder) {
         try {
             if (reader instanceof MultiFormatReader) {
                 // Optimization - MultiFormatReader's normal decode() method is slow.
-                return ((MultiFormatReader) reader).decodeWithState(bitmap);
+                return (tryHarder ? getTryHarderReader() : (MultiFormatReader) reader)
+                        .decodeWithState(bitmap);
             } else {
-                return reader.decode(bitmap);
+                return reader.decode(bitmap, tryHarder ? getTryHarderHints() : hints);
             }
+        } catch (@NonNull final DecodeDeadline.ExpiredException e) {
+            // Not a failure; the caller abandons the frame
+            throw e;
         } catch (@NonNull final Exception ignore) {
             return null;
 
         } finally {
             reader.reset();
+            if (tryHarderReader != null) {
+                tryHarderReader.reset();
+            }
+        }
+    }
+
+    @NonNull
+    private Map<DecodeHintType, Object> getTryHarderHints() {
+        if (tryHarderHints == null) {
+            tryHarderHints = new EnumMap<>(DecodeHintType.class);
+            if (hints != null) {
+                tryHarderHints.putAll(hints);
+            }
+            tryHarderHints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+            tryHarderHints.putIfAbsent(DecodeHintType.NEED_RESULT_POINT_CALLBACK, this);
+        }
+        return tryHarderHints;
+    }
+
+    /**
+     * Get a second {@link MultiFormatReader}, configured with {@link #getTryHarderHints()}.
+     * Switching the hints on the main reader would recreate all its readers twice per frame.
+     *
+     * @return reader
+     */
+    @NonNull
+    private MultiFormatReader getTryHarderReader() {
+        if (tryHarderReader == null) {
+            tryHarderReader = new MultiFormatReader();
+            tryHarderReader.setHints(getTryHarderHints());
+        }
+        return tryHarderReader;
+    }
+
+    /**
+     * Decode all barcodes in the given source.
+     * <p>
+     * A {@link QRCodeReader} is replaced by a {@link QRCodeMultiReader};
+     * any other reader is wrapped in a {@link GenericMultipleBarcodeReader}.
+     * If enabled, the inverted source is tried when nothing was found.
+     *
+     * @param source to decode
+     *
+     * @return a list with all results found; can be empty
+     */
+    @Override
+    @NonNull
+    public List<Result> decodeMultiple(@NonNull final LuminanceSource source) {
+        points.clear();
+        if (binarizer != BinarizerStrategy.Adaptive) {
+            final List<Result> results = decodeMultiple(toBitmap(source));
+            if (!results.isEmpty() || !alsoInverted) {
+                return results;
+            }
+            return decodeMultiple(toBitmap(source.invert()));
+        }
+
+        final boolean global = pickGlobal(source);
+        final List<Result> results = decodeMultiple(toBitmap(source, global));
+        if (!results.isEmpty() || !alsoInverted) {
+            return results;
+        }
+        return decodeMultiple(toBitmap(source.invert(), global));
+    }
+
+    @NonNull
+    private List<Result> decodeMultiple(@NonNull final BinaryBitmap bitmap) {
+        if (multipleReader == null) {
+            multipleReader = createMultipleReader();
+        }
+        try {
+            return Arrays.asList(multipleReader.decodeMultiple(bitmap, hints));
+        } catch (@NonNull final DecodeDeadline.ExpiredException e) {
+            // Not a failure; the caller abandons the frame
+            throw e;
+        } catch (@NonNull final Exception ignore) {
+            return List.of();
+
+        } finally {
+            reader.reset();
+        }
+    }
+
+    @NonNull
+    private MultipleBarcodeReader createMultipleReader() {
+        if (reader.getClass() == QRCodeReader.class) {
+            return new QRCodeMultiReader();
+        }
+        if (reader instanceof MultiFormatReader) {
+            // The generic reader would call decode(bitmap, hints),
+            // which replaces the hints the MultiFormatReader was configured with.
+            final MultiFormatReader multiFormatReader = (MultiFormatReader) reader;
+            return new GenericMultipleBarcodeReader(new Reader() {
+                @Override
+                public Result decode(@NonNull final BinaryBitmap image)
+                        throws NotFoundException {
+                    return multiFormatReader.decodeWithState(image);
+                }
+
+                @Override
+                public Result decode(@NonNull final BinaryBitmap image,
+                                     @Nullable final Map<DecodeHintType, ?> ignore)
+                        throws NotFoundException {
+                    return multiFormatReader.decodeWithState(image);
+                }
+
+                @Override
+                public void reset() {
+                    multiFormatReader.reset();
+                }
+            });
         }
+        return new GenericMultipleBarcodeReader(reader);
     }
 
     @Override
     @NonNull
     public List<ResultPoint> getPossibleResultPoints() {
-        return new ArrayList<>(points);
+        return pointsView;
     }
 
     @Override
     public void foundPossibleResultPoint(@NonNull final ResultPoint point) {
         points.add(point);
+        // The 2D detectors don't touch the source after binarizing; check here as well
+        DecodeDeadline.check();
     }
 
 }
@@ -3,15 +3,44 @@ package com.hardbacknutter.tinyzxingwrapper.scanner;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.MultiFormatReader;
+import com.google.zxing.Reader;
+import com.google.zxing.aztec.AztecReader;
+import com.google.zxing.datamatrix.DataMatrixReader;
+import com.google.zxing.maxicode.MaxiCodeReader;
+import com.google.zxing.oned.CodaBarReader;
+import com.google.zxing.oned.Code128Reader;
+import com.google.zxing.oned.Code39Reader;
+import com.google.zxing.oned.Code93Reader;
+import com.google.zxing.oned.EAN13Reader;
+import com.google.zxing.oned.EAN8Reader;
+import com.google.zxing.oned.ITFReader;
+import com.google.zxing.oned.MultiFormatOneDReader;
+import com.google.zxing.oned.UPCAReader;
+import com.google.zxing.oned.UPCEReader;
+import com.google.zxing.oned.rss.RSS14Reader;
+import com.google.zxing.oned.rss.expanded.RSSExpandedReader;
+import com.google.zxing.pdf417.PDF417Reader;
+import com.google.zxing.qrcode.QRCodeReader;
 
+import java.util.Collection;
 import java.util.EnumMap;
 import java.util.Map;
 
 /**
  * DecoderFactory that creates a {@link Decoder}
- * using a {@link MultiFormatReader} and any provided {@link DecodeHintType} hints.
+ * using the minimal {@link Reader} for any provided {@link DecodeHintType} hints.
+ * <ul>
+ *     <li>a single format: the reader for that format; e.g. a {@link QRCodeReader}</li>
+ *     <li>only 1D formats: a {@link MultiFormatOneDReader}</li>
+ *     <li>anything else: a {@link MultiFormatReader}</li>
+ * </ul>
+ * Readers for formats which are not requested are never created.
+ * <p>
+ * When {@link FormatStatistics} are given, any set of formats uses a reader which tries
+ * the most frequently found formats first, and which can narrow down to a single format.
  */
 @SuppressWarnings("WeakerAccess")
 public class DefaultDecoderFactory
@@ -19,23 +48,169 @@ public class DefaultDecoderFactory
 
     private final Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
 
+    /**
+     * The inverted pass is done by the {@link DefaultDecoder}
+     * instead of the {@link MultiFormatReader}.
+     */
+    private final boolean alsoInverted;
+
+    @NonNull
+    private final BinarizerStrategy binarizer;
+
+    @Nullable
+    private final FormatStatistics statistics;
+    private final int narrowAfterHits;
+
     protected DefaultDecoderFactory(@Nullable final Map<DecodeHintType, Object> hints) {
+        this(hints, BinarizerStrategy.Hybrid);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param hints     (optional) to use
+     * @param binarizer how the decoders binarize the source
+     */
+    protected DefaultDecoderFactory(@Nullable final Map<DecodeHintType, Object> hints,
+                                    @NonNull final BinarizerStrategy binarizer) {
+        this(hints, binarizer, null, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param hints           (optional) to use
+     * @param binarizer       how the decoders binarize the source
+     * @param statistics      (optional) to order the readers by;
+     *                        shared by all decoders created
+     * @param narrowAfterHits only try the reader for the format found this many times
+     *                        in a row; {@code 0} to never narrow down.
+     *                        Ignored if there are no statistics.
+     */
+    protected DefaultDecoderFactory(@Nullable final Map<DecodeHintType, Object> hints,
+                                    @NonNull final BinarizerStrategy binarizer,
+                                    @Nullable final FormatStatistics statistics,
+                                    final int narrowAfterHits) {
+        this.statistics = statistics;
+        this.narrowAfterHits = narrowAfterHits;
         if (hints != null) {
             this.hints.putAll(hints);
         }
+        final Object inverted = this.hints.remove(DecodeHintType.ALSO_INVERTED);
+        alsoInverted = inverted != null && !Boolean.FALSE.equals(inverted);
+
+        // The 1D readers only use single rows, which both binarizers produce the same way.
+        // Don't waste time trying the other one.
+        final Object formats = this.hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        if (binarizer == BinarizerStrategy.Adaptive
+            && formats instanceof Collection
+            && BarcodeFamily.isLinear((Collection<?>) formats)) {
+            this.binarizer = BinarizerStrategy.Global;
+        } else {
+            this.binarizer = binarizer;
+        }
     }
 
     @Override
     @NonNull
     public Decoder createDecoder() {
-        final MultiFormatReader reader = new MultiFormatReader();
-        final Decoder decoder = new DefaultDecoder(reader);
+        // Each decoder gets its own copy, as the hints include the callback.
+        final Map<DecodeHintType, Object> decoderHints = new EnumMap<>(hints);
 
-        // Use the decoder itself as the callback
-        hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, decoder);
+        final Reader reader = createReader(decoderHints);
+        final Decoder decoder = new DefaultDecoder(reader, decoderHints, alsoInverted,
+                                                   binarizer);
 
-        reader.setHints(hints);
+        // Use the decoder itself as the callback.
+        // The readers look it up when decoding, so it's fine to add it after creating them.
+        decoderHints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, decoder);
 
         return decoder;
     }
+
+    /**
+     * Create the minimal reader for the {@link DecodeHintType#POSSIBLE_FORMATS} hint.
+     *
+     * @param hints to use
+     *
+     * @return reader
+     */
+    @NonNull
+    protected Reader createReader(@NonNull final Map<DecodeHintType, Object> hints) {
+        final Object value = hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        final Collection<?> formats = value instanceof Collection ? (Collection<?>) value : null;
+
+        if (formats != null && formats.size() == 1) {
+            final Object format = formats.iterator().next();
+            if (format instanceof BarcodeFormat) {
+                final Reader reader = createReader((BarcodeFormat) format, hints);
+                if (reader != null) {
+                    return reader;
+                }
+            }
+        }
+
+        if (statistics != null) {
+            return new TunedMultiFormatReader(hints, statistics, narrowAfterHits);
+        }
+
+        if (BarcodeFamily.isLinear(formats)) {
+            return new MultiFormatOneDReader(hints);
+        }
+
+        final MultiFormatReader reader = new MultiFormatReader();
+        reader.setHints(hints);
+        return reader;
+    }
+
+    /**
+     * Create the reader for a single format.
+     *
+     * @param format to decode
+     * @param hints  to use
+     *
+     * @return reader, or {@code null} if the format can't be decoded on its own
+     */
+    @Nullable
+    static Reader createReader(@NonNull final BarcodeFormat format,
+                               @NonNull final Map<DecodeHintType, Object> hints) {
+        switch (format) {
+            case QR_CODE:
+                return new QRCodeReader();
+            case DATA_MATRIX:
+                return new DataMatrixReader();
+            case AZTEC:
+                return new AztecReader();
+            case PDF_417:
+                return new PDF417Reader();
+            case MAXICODE:
+                return new MaxiCodeReader();
+            case EAN_13:
+                return new EAN13Reader();
+            case EAN_8:
+                return new EAN8Reader();
+            case UPC_A:
+                return new UPCAReader();
+            case UPC_E:
+                return new UPCEReader();
+            case CODE_39:
+                return new Code39Reader(
+                        hints.containsKey(DecodeHintType.ASSUME_CODE_39_CHECK_DIGIT));
+            case CODE_93:
+                return new Code93Reader();
+            case CODE_128:
+                return new Code128Reader();
+            case ITF:
+                return new ITFReader();
+            case CODABAR:
+                return new CodaBarReader();
+            case RSS_14:
+                return new RSS14Reader();
+            case RSS_EXPANDED:
+                return new RSSExpandedReader();
+            default:
+                // i.e. UPC_EAN_EXTENSION, which is only decoded along with EAN/UPC
+                return null;
+        }
+    }
 }
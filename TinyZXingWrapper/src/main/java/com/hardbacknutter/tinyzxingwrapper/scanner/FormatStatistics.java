@@ -0,0 +1,129 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.zxing.BarcodeFormat;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Counts the barcodes decoded per {@link BarcodeFormat}.
+ * <p>
+ * Used by the {@link DefaultDecoderFactory} to try the readers for the most frequently
+ * found formats first, and optionally to only try the reader for the format which was
+ * found a number of times in a row.
+ * <p>
+ * Use a new instance for each scan session, or keep one around (and persist the
+ * {@link #getHitCounts()}) to learn across sessions.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see BarcodeScanner.Builder#setFormatTuning(FormatStatistics, int)
+ */
+@SuppressWarnings("WeakerAccess")
+public final class FormatStatistics {
+
+    @GuardedBy("this")
+    private final Map<BarcodeFormat, Integer> hits = new EnumMap<>(BarcodeFormat.class);
+    /** The format of the last barcode found. */
+    @GuardedBy("this")
+    @Nullable
+    private BarcodeFormat lastFormat;
+    /** The number of barcodes in a row found with the {@link #lastFormat}. */
+    @GuardedBy("this")
+    private int streak;
+    /** Incremented for each change; used to tell whether the order of the formats changed. */
+    @GuardedBy("this")
+    private int modCount;
+
+    /**
+     * Record a barcode found.
+     *
+     * @param format of the barcode
+     */
+    public synchronized void record(@NonNull final BarcodeFormat format) {
+        hits.merge(format, 1, Integer::sum);
+        if (format == lastFormat) {
+            streak++;
+        } else {
+            lastFormat = format;
+            streak = 1;
+        }
+        modCount++;
+    }
+
+    /**
+     * Get the number of barcodes found for the given formats.
+     *
+     * @param formats to count
+     *
+     * @return the total number of hits
+     */
+    public synchronized int getHits(@NonNull final Collection<BarcodeFormat> formats) {
+        int total = 0;
+        for (final BarcodeFormat format : formats) {
+            total += hits.getOrDefault(format, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Get the format which was found the given number of times in a row.
+     *
+     * @param minStreak the minimum number of hits in a row
+     *
+     * @return the format, or {@code null} if there is none
+     */
+    @Nullable
+    public synchronized BarcodeFormat getStreakFormat(final int minStreak) {
+        return streak >= minStreak ? lastFormat : null;
+    }
+
+    /**
+     * Get a copy of the number of barcodes found per format; e.g. to persist them.
+     *
+     * @return hit counts
+     */
+    @NonNull
+    public synchronized Map<BarcodeFormat, Integer> getHitCounts() {
+        return new EnumMap<>(hits);
+    }
+
+    /**
+     * Add previously persisted hit counts to the current ones.
+     *
+     * @param counts as returned by {@link #getHitCounts()}
+     */
+    public synchronized void addHitCounts(@NonNull final Map<BarcodeFormat, Integer> counts) {
+        counts.forEach((format, count) -> hits.merge(format, count, Integer::sum));
+        modCount++;
+    }
+
+    /**
+     * Forget all barcodes found.
+     */
+    public synchronized void clear() {
+        hits.clear();
+        lastFormat = null;
+        streak = 0;
+        modCount++;
+    }
+
+    synchronized int getModCount() {
+        return modCount;
+    }
+
+    @Override
+    @NonNull
+    public synchronized String toString() {
+        return "FormatStatistics{"
+               + "hits=" + hits
+               + ", lastFormat=" + lastFormat
+               + ", streak=" + streak
+               + '}';
+    }
+}
@@ -0,0 +1,237 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small pool of {@code byte[]} buffers, keyed by size class.
+ * <p>
+ * The analyzer processes frames of the same size over and over again,
+ * so after the first few frames all pixel buffers can be recycled instead of
+ * being left for the garbage collector.
+ * <p>
+ * Buffers are handed out rounded up to a size class, i.e. they can be (up to 1/8) larger
+ * than requested. As allowed by {@link com.google.zxing.LuminanceSource#getMatrix()},
+ * users must not rely on the length of a buffer. This way regions which differ by a few
+ * pixels from frame to frame (e.g. a tracked barcode) still share their buffers.
+ * <p>
+ * Buffers are normally obtained through a {@link Lease}, which returns
+ * all buffers borrowed during a single frame when it's closed.
+ * <p>
+ * This class is thread-safe.
+ */
+@SuppressWarnings("WeakerAccess")
+public class FrameBufferPool {
+
+    /**
+     * The number of idle buffers kept per frame being decoded.
+     * We need a frame buffer, a row buffer and a few for derived sources
+     * (e.g. rotated or inverted) per frame.
+     */
+    private static final int BUFFERS_PER_FRAME = 8;
+
+    /** Requests up to this size all share a single size class. */
+    private static final int MIN_SIZE_CLASS = 4096;
+    /** Each power of two is split into {@code 2^SIZE_CLASS_BITS} size classes. */
+    private static final int SIZE_CLASS_BITS = 3;
+
+    /** The maximum number of idle buffers kept. */
+    private final int maxIdle;
+
+    @GuardedBy("this")
+    private final List<byte[]> idle;
+
+    /**
+     * Constructor for a pool serving a single frame at a time.
+     */
+    public FrameBufferPool() {
+        this(1);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param framesInFlight the number of frames being decoded at the same time;
+     *                       e.g. the number of decoder threads
+     */
+    public FrameBufferPool(@IntRange(from = 1) final int framesInFlight) {
+        maxIdle = Math.max(1, framesInFlight) * BUFFERS_PER_FRAME;
+        idle = new ArrayList<>(maxIdle);
+    }
+
+    /**
+     * Get the size class for the given size; i.e. the size rounded up to
+     * the next multiple of 1/8 of its highest power of two.
+     *
+     * @param size requested
+     *
+     * @return the actual size of the buffer
+     */
+    static int getSizeClass(final int size) {
+        if (size <= MIN_SIZE_CLASS) {
+            return MIN_SIZE_CLASS;
+        }
+        final int shift = 31 - Integer.numberOfLeadingZeros(size - 1) - SIZE_CLASS_BITS;
+        final int step = 1 << shift;
+        return (size + step - 1) & -step;
+    }
+
+    /**
+     * Get a buffer of at least the given size.
+     * The content of the buffer is undefined.
+     *
+     * @param size of the buffer
+     *
+     * @return buffer; can be larger than requested
+     */
+    @NonNull
+    public synchronized byte[] acquire(final int size) {
+        final int sizeClass = getSizeClass(size);
+        for (int i = idle.size() - 1; i >= 0; i--) {
+            if (idle.get(i).length == sizeClass) {
+                return idle.remove(i);
+            }
+        }
+        return new byte[sizeClass];
+    }
+
+    /**
+     * Return a buffer to the pool.
+     * If the pool is full, the oldest idle buffer is dropped.
+     * Buffers not obtained from {@link #acquire(int)} are ignored.
+     *
+     * @param buffer to return; must not be used by the caller afterwards
+     */
+    public synchronized void release(@NonNull final byte[] buffer) {
+        if (buffer.length != getSizeClass(buffer.length)) {
+            return;
+        }
+        if (idle.size() >= maxIdle) {
+            idle.remove(0);
+        }
+        idle.add(buffer);
+    }
+
+    /**
+     * Drop all idle buffers.
+     */
+    public synchronized void clear() {
+        idle.clear();
+    }
+
+    /**
+     * Start borrowing buffers for a single frame.
+     * <p>
+     * To avoid creating a lease for each frame, an analyzer can keep the lease
+     * and {@link Lease#reopen()} it for the next frame.
+     *
+     * @return a new lease; close it when done with the frame
+     */
+    @NonNull
+    public Lease lease() {
+        return new Lease();
+    }
+
+    /**
+     * Keeps track of all buffers borrowed while processing a single frame,
+     * and returns them to the pool when closed.
+     * <p>
+     * Not thread-safe; a lease should only be used by the thread processing the frame.
+     */
+    public final class Lease
+            implements AutoCloseable {
+
+        private final List<byte[]> borrowed = new ArrayList<>(BUFFERS_PER_FRAME);
+        private boolean closed;
+        /** Incremented each time the lease is closed; i.e. identifies the current frame. */
+        private int generation;
+
+        private Lease() {
+        }
+
+        /**
+         * Reuse this lease for the next frame.
+         * If it was not closed yet, all borrowed buffers are returned first.
+         *
+         * @return this lease
+         */
+        @NonNull
+        public Lease reopen() {
+            close();
+            closed = false;
+            return this;
+        }
+
+        /**
+         * Borrow a buffer of at least the given size.
+         * The content of the buffer is undefined.
+         *
+         * @param size of the buffer
+         *
+         * @return buffer; can be larger than requested; valid until this lease is closed.
+         *
+         * @throws IllegalStateException if the lease was already closed
+         */
+        @NonNull
+        public byte[] acquire(final int size) {
+            if (closed) {
+                throw new IllegalStateException("Lease is closed");
+            }
+            final byte[] buffer = FrameBufferPool.this.acquire(size);
+            borrowed.add(buffer);
+            return buffer;
+        }
+
+        /**
+         * Check whether this lease was closed.
+         * Anything depending on the frame this lease was opened for should no longer be used.
+         *
+         * @return {@code true} if closed
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Get the generation of this lease, to be passed to {@link #isClosed(int)} later on.
+         *
+         * @return generation
+         */
+        public int getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Check whether the frame this lease was opened for was closed.
+         * Unlike {@link #isClosed()}, this is still {@code true} after the lease
+         * was {@link #reopen() reopened} for a later frame.
+         *
+         * @param generation as returned by {@link #getGeneration()} for the frame
+         *
+         * @return {@code true} if closed
+         */
+        public boolean isClosed(final int generation) {
+            return closed || this.generation != generation;
+        }
+
+        /**
+         * Return all borrowed buffers to the pool.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            generation++;
+            for (int i = 0; i < borrowed.size(); i++) {
+                release(borrowed.get(i));
+            }
+            borrowed.clear();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+
+import com.google.zxing.ResultPoint;
+
+/**
+ * Coordinate helpers for mapping between the camera image as delivered by the sensor,
+ * and the same image after it has been mirrored and rotated for decoding.
+ */
+final class FrameGeometry {
+
+    private FrameGeometry() {
+    }
+
+    /**
+     * Map a rectangle from sensor coordinates to the coordinates of the image
+     * after mirroring and rotating it.
+     *
+     * @param rect    to map; will be modified in place
+     * @param width   of the sensor image
+     * @param height  of the sensor image
+     * @param mirror  whether the image is flipped around the vertical axis
+     * @param degrees to rotate clockwise (after mirroring)
+     *
+     * @see PlaneLuminanceSource
+     */
+    static void toOriented(@NonNull final Rect rect,
+                           final int width,
+                           final int height,
+                           final boolean mirror,
+                           final int degrees) {
+        if (mirror) {
+            rect.set(width - rect.right, rect.top, width - rect.left, rect.bottom);
+        }
+        switch (SimpleLuminanceSource.normaliseRotation(degrees)) {
+            case 90:
+                rect.set(height - rect.bottom, rect.left, height - rect.top, rect.right);
+                break;
+            case 180:
+                rect.set(width - rect.right, height - rect.bottom,
+                         width - rect.left, height - rect.top);
+                break;
+            case 270:
+                rect.set(rect.top, width - rect.right, rect.bottom, width - rect.left);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Map a point from the coordinates of an image to the coordinates
+     * of the same image after rotating it.
+     *
+     * @param point   to map
+     * @param width   of the image before rotating
+     * @param height  of the image before rotating
+     * @param degrees to rotate clockwise
+     *
+     * @return the mapped point; the original point if there is no rotation
+     */
+    @NonNull
+    static ResultPoint rotate(@NonNull final ResultPoint point,
+                              final int width,
+                              final int height,
+                              final int degrees) {
+        final float x = point.getX();
+        final float y = point.getY();
+        switch (SimpleLuminanceSource.normaliseRotation(degrees)) {
+            case 90:
+                return new ResultPoint(height - y, x);
+            case 180:
+                return new ResultPoint(width - x, height - y);
+            case 270:
+                return new ResultPoint(y, width - x);
+            default:
+                return point;
+        }
+    }
+
+    /**
+     * Map a point from the coordinates of an image to the coordinates
+     * of the same image after rotating it, in place.
+     *
+     * @param points  x,y pairs
+     * @param offset  of the x coordinate of the point to map
+     * @param width   of the image before rotating
+     * @param height  of the image before rotating
+     * @param degrees to rotate clockwise
+     */
+    static void rotate(@NonNull final float[] points,
+                       final int offset,
+                       final int width,
+                       final int height,
+                       final int degrees) {
+        final float x = points[offset];
+        final float y = points[offset + 1];
+        switch (SimpleLuminanceSource.normaliseRotation(degrees)) {
+            case 90:
+                points[offset] = height - y;
+                points[offset + 1] = x;
+                break;
+            case 180:
+                points[offset] = width - x;
+                points[offset + 1] = height - y;
+                break;
+            case 270:
+                points[offset] = y;
+                points[offset + 1] = width - x;
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A cheap estimate of the sharpness and exposure of a frame.
+ * <p>
+ * Measured on a subsampled grid of the Y plane, before any decoding is done.
+ * Frames taken while the camera is refocusing or moving score a low sharpness,
+ * and will (nearly) always fail to decode.
+ *
+ * @see BarcodeScanner.Builder#setFrameQualityGate(float, float)
+ * @see FrameQualityListener
+ */
+@SuppressWarnings("WeakerAccess")
+public final class FrameQuality {
+
+    /** Measure every n-th pixel of every n-th row. */
+    private static final int SAMPLE_STEP = 4;
+    /** Luminance values at or below this are considered clipped (under exposed). */
+    private static final int CLIP_LOW = 8;
+    /** Luminance values at or above this are considered clipped (over exposed). */
+    private static final int CLIP_HIGH = 247;
+
+    private final float sharpness;
+    private final float brightness;
+    private final float clipped;
+
+    /**
+     * Constructor.
+     *
+     * @param sharpness  the mean gradient energy
+     * @param brightness the mean luminance
+     * @param clipped    the fraction of clipped pixels
+     */
+    public FrameQuality(final float sharpness,
+                        final float brightness,
+                        final float clipped) {
+        this.sharpness = sharpness;
+        this.brightness = brightness;
+        this.clipped = clipped;
+    }
+
+    /**
+     * Measure a region of the (Y) plane of an image; typically the scan window.
+     *
+     * @param plane       The image data. Padding (see rowStride/pixelStride) and u/v data
+     *                    is allowed and will be skipped.
+     *                    The position of the buffer is not preserved.
+     * @param rowStride   The distance between the start of two consecutive rows
+     *                    of pixels in the image.
+     * @param pixelStride The distance between two consecutive pixel values in a row of pixels.
+     * @param left        The left edge of the region, in the (unrotated) image
+     * @param top         The top edge of the region, in the (unrotated) image
+     * @param w           Width of the region
+     * @param h           Height of the region
+     * @param lease       (optional) to borrow the buffers from.
+     *
+     * @return the quality
+     */
+    @NonNull
+    static FrameQuality measure(@NonNull final ByteBuffer plane,
+                                final int rowStride,
+                                final int pixelStride,
+                                final int left,
+                                final int top,
+                                final int w,
+                                final int h,
+                                @Nullable final FrameBufferPool.Lease lease) {
+        if (w < 2 || h < 2) {
+            return new FrameQuality(0, 0, 1);
+        }
+
+        // Each sample needs its right and bottom neighbour, so read two rows at a time.
+        final int span = (w - 1) * pixelStride + 1;
+        final byte[] rows = lease != null ? lease.acquire(2 * span) : new byte[2 * span];
+
+        long energy = 0;
+        long sum = 0;
+        int clippedCount = 0;
+        int count = 0;
+        for (int y = top; y < top + h - 1; y += SAMPLE_STEP) {
+            plane.position(y * rowStride + left * pixelStride);
+            plane.get(rows, 0, span);
+            plane.position((y + 1) * rowStride + left * pixelStride);
+            plane.get(rows, span, span);
+
+            for (int p = 0; p < span - pixelStride; p += SAMPLE_STEP * pixelStride) {
+                final int v = rows[p] & 0xFF;
+                final int dx = (rows[p + pixelStride] & 0xFF) - v;
+                final int dy = (rows[span + p] & 0xFF) - v;
+                energy += dx * dx + dy * dy;
+                sum += v;
+                if (v <= CLIP_LOW || v >= CLIP_HIGH) {
+                    clippedCount++;
+                }
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            return new FrameQuality(0, 0, 1);
+        }
+        return new FrameQuality((float) energy / count,
+                                (float) sum / count,
+                                (float) clippedCount / count);
+    }
+
+    /**
+     * Get the sharpness; the mean squared luminance gradient.
+     * <p>
+     * A blurred frame, or a frame without any detail, scores close to {@code 0}.
+     * The value for a sharp frame depends on the scene, the lighting and the resolution;
+     * use a {@link FrameQualityListener} to find a suitable threshold.
+     *
+     * @return sharpness, {@code >= 0}
+     */
+    public float getSharpness() {
+        return sharpness;
+    }
+
+    /**
+     * Get the mean luminance.
+     *
+     * @return brightness, in the range {@code [0..255]}
+     */
+    public float getBrightness() {
+        return brightness;
+    }
+
+    /**
+     * Get the fraction of the pixels which are (nearly) black or white;
+     * i.e. badly under or over exposed.
+     *
+     * @return clipped fraction, in the range {@code [0..1]}
+     */
+    public float getClipped() {
+        return clipped;
+    }
+
+    /**
+     * Check whether the frame is good enough to decode.
+     *
+     * @param minSharpness the minimum {@link #getSharpness()}
+     * @param maxClipped   the maximum {@link #getClipped()}
+     *
+     * @return {@code true} if the frame should be decoded
+     */
+    public boolean isAcceptable(final float minSharpness,
+                                final float maxClipped) {
+        return sharpness >= minSharpness && clipped <= maxClipped;
+    }
+
+    @Override
+    @NonNull
+    public String toString() {
+        return "FrameQuality{"
+               + "sharpness=" + sharpness
+               + ", brightness=" + brightness
+               + ", clipped=" + clipped
+               + '}';
+    }
+}
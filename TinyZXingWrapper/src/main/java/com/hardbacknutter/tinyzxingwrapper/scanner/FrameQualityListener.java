@@ -0,0 +1,25 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.UiThread;
+
+/**
+ * The {@link BarcodeScanner} will call the method of this interface
+ * with the quality of each frame, before it's decoded.
+ */
+@FunctionalInterface
+public interface FrameQualityListener {
+
+    /**
+     * Receive the quality of a frame.
+     *
+     * @param quality of the frame
+     * @param decoded {@code false} if the frame was skipped because its quality
+     *                was below the thresholds set on the builder
+     *
+     * @see BarcodeScanner.Builder#setFrameQualityGate(float, float)
+     */
+    @UiThread
+    void onFrameQuality(@NonNull FrameQuality quality,
+                        boolean decoded);
+}
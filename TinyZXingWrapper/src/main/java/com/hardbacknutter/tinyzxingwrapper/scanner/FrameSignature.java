@@ -0,0 +1,121 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A compact signature of a frame: a 16x16 thumbnail of block means of the Y plane.
+ * <p>
+ * Used to detect the camera looking at an unchanged scene, e.g. a handset resting on
+ * a counter. The signature of the current frame is compared with a reference;
+ * typically the last frame which was decoded without a result.
+ * <p>
+ * Not thread-safe; owned by the analyzer.
+ */
+final class FrameSignature {
+
+    /** The thumbnail is {@code SIZE * SIZE} blocks. */
+    private static final int SIZE = 16;
+    /** Measure every n-th pixel of every n-th row of each block. */
+    private static final int SAMPLE_STEP = 4;
+
+    @NonNull
+    private final int[] sums = new int[SIZE];
+    @NonNull
+    private byte[] current = new byte[SIZE * SIZE];
+    @NonNull
+    private byte[] reference = new byte[SIZE * SIZE];
+    private boolean hasReference;
+    /** The {@link System#nanoTime()} at which the reference was set. */
+    private long referenceTime;
+
+    /**
+     * Compute the signature of the (Y) plane of an image.
+     * The orientation of the image is irrelevant; we always use the sensor orientation.
+     *
+     * @param plane       The image data. Padding (see rowStride/pixelStride) and u/v data
+     *                    is allowed and will be skipped.
+     * @param width       Width of the image
+     * @param height      Height of the image
+     * @param rowStride   The distance between the start of two consecutive rows
+     *                    of pixels in the image.
+     * @param pixelStride The distance between two consecutive pixel values in a row of pixels.
+     */
+    void compute(@NonNull final ByteBuffer plane,
+                 final int width,
+                 final int height,
+                 final int rowStride,
+                 final int pixelStride) {
+        final int blockWidth = Math.max(1, width / SIZE);
+        final int blockHeight = Math.max(1, height / SIZE);
+        final int stepX = Math.min(SAMPLE_STEP, blockWidth);
+        final int stepY = Math.min(SAMPLE_STEP, blockHeight);
+        final int samplesPerRow = (blockWidth + stepX - 1) / stepX;
+        final int samples = samplesPerRow * ((blockHeight + stepY - 1) / stepY);
+
+        for (int by = 0; by < SIZE; by++) {
+            final int top = Math.min(by * blockHeight, height - blockHeight);
+            for (int bx = 0; bx < SIZE; bx++) {
+                sums[bx] = 0;
+            }
+            for (int y = top; y < top + blockHeight; y += stepY) {
+                final int rowStart = y * rowStride;
+                for (int bx = 0; bx < SIZE; bx++) {
+                    final int left = Math.min(bx * blockWidth, width - blockWidth);
+                    int sum = 0;
+                    for (int x = left; x < left + blockWidth; x += stepX) {
+                        sum += plane.get(rowStart + x * pixelStride) & 0xFF;
+                    }
+                    sums[bx] += sum;
+                }
+            }
+            for (int bx = 0; bx < SIZE; bx++) {
+                current[by * SIZE + bx] = (byte) (sums[bx] / samples);
+            }
+        }
+    }
+
+    /**
+     * Check whether the current frame is (nearly) the same as the reference frame.
+     *
+     * @param threshold  the maximum mean difference of the blocks, in luminance levels
+     * @param maxAgeNano the maximum age of the reference; an older reference never matches.
+     *                   {@code 0} for no maximum.
+     * @param now        the current {@link System#nanoTime()}
+     *
+     * @return {@code true} if the current frame matches the reference
+     */
+    boolean matchesReference(final float threshold,
+                             final long maxAgeNano,
+                             final long now) {
+        if (!hasReference || maxAgeNano > 0 && now - referenceTime > maxAgeNano) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < current.length; i++) {
+            diff += Math.abs((current[i] & 0xFF) - (reference[i] & 0xFF));
+        }
+        return diff <= threshold * current.length;
+    }
+
+    /**
+     * Use the current frame as the reference.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    void setReference(final long now) {
+        final byte[] tmp = reference;
+        reference = current;
+        current = tmp;
+        hasReference = true;
+        referenceTime = now;
+    }
+
+    /**
+     * Clear the reference; the next frame will not match.
+     */
+    void clearReference() {
+        hasReference = false;
+    }
+}
@@ -0,0 +1,595 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.zxing.LuminanceSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link LuminanceSource} reading directly from the (Y) plane of a camera image.
+ * <p>
+ * Nothing is copied up front. Padding (rowStride/pixelStride), mirroring and rotation
+ * are all handled by mapping the coordinates when the data is read:
+ * <ul>
+ *     <li>{@link #getRow(int, byte[])} only reads the pixels of the requested row.
+ *     The 1D readers only need a handful of rows, so most of the frame is never touched.</li>
+ *     <li>{@link #getMatrix()} copies the whole (mirrored/rotated) image in a single pass
+ *     the first time it's called.</li>
+ *     <li>{@link #invert()} returns a view which inverts the data as it's read.</li>
+ * </ul>
+ * <strong>IMPORTANT:</strong> the plane is only valid while the image is open.
+ * When a {@link FrameBufferPool.Lease} is used, it must be closed before the image is closed;
+ * any access after that will throw an {@link IllegalStateException}.
+ */
+@SuppressWarnings("WeakerAccess")
+public class PlaneLuminanceSource
+        extends LuminanceSource {
+
+    @NonNull
+    private final ByteBuffer plane;
+    private final int pixelStride;
+
+    /** Index in the plane of the pixel at (0,0). */
+    private final int origin;
+    /** Distance in the plane between the pixels at (x,y) and (x+1,y). */
+    private final int stepX;
+    /** Distance in the plane between the pixels at (x,y) and (x,y+1). */
+    private final int stepY;
+    /** {@code true} if this is an inverted view of the plane. */
+    private final boolean inverted;
+
+    /**
+     * Optional; if set, the matrix buffer is borrowed from it.
+     */
+    @Nullable
+    private final FrameBufferPool.Lease lease;
+    /** The {@link FrameBufferPool.Lease#getGeneration()} of the frame we're reading from. */
+    private final int leaseGeneration;
+
+    /** Lazily created by {@link #getMatrix()}. */
+    @Nullable
+    private byte[] matrix;
+
+    /** Cached by {@link #invert()}; the inverted view of an inverted view is the original. */
+    @Nullable
+    private PlaneLuminanceSource invertedView;
+
+    /**
+     * Constructor.
+     *
+     * @param plane       The image data. Padding (see rowStride/pixelStride) and u/v data
+     *                    is allowed and will be skipped.
+     *                    The position of the buffer is not preserved.
+     * @param width       Width of the image
+     * @param height      Height of the image
+     * @param rowStride   The distance between the start of two consecutive rows
+     *                    of pixels in the image.
+     * @param pixelStride The distance between two consecutive pixel values in a row of pixels.
+     * @param mirror      {@code true} to flip the data around the vertical axis
+     * @param degrees     to rotate clockwise (after mirroring); accepts {@code 90, 180, 270}.
+     *                    Any other angle is treated as {@code 0}. No error is thrown.
+     * @param lease       (optional) to borrow the buffers from, and to guard access to
+     *                    the plane. If {@code null}, the caller must make sure the plane
+     *                    remains valid for as long as the source is used.
+     */
+    public PlaneLuminanceSource(@NonNull final ByteBuffer plane,
+                                final int width,
+                                final int height,
+                                final int rowStride,
+                                final int pixelStride,
+                                final boolean mirror,
+                                final int degrees,
+                                @Nullable final FrameBufferPool.Lease lease) {
+        this(plane, getOrientedWidth(width, height, degrees),
+             getOrientedHeight(width, height, degrees),
+             pixelStride,
+             getOrigin(width, height, rowStride, pixelStride, mirror, degrees),
+             getStepX(rowStride, pixelStride, mirror, degrees),
+             getStepY(rowStride, pixelStride, mirror, degrees),
+             false, lease);
+    }
+
+    private PlaneLuminanceSource(@NonNull final ByteBuffer plane,
+                                 final int width,
+                                 final int height,
+                                 final int pixelStride,
+                                 final int origin,
+                                 final int stepX,
+                                 final int stepY,
+                                 final boolean inverted,
+                                 @Nullable final FrameBufferPool.Lease lease) {
+        super(width, height);
+        this.plane = plane;
+        this.pixelStride = pixelStride;
+        this.origin = origin;
+        this.stepX = stepX;
+        this.stepY = stepY;
+        this.inverted = inverted;
+        this.lease = lease;
+        leaseGeneration = lease != null ? lease.getGeneration() : 0;
+    }
+
+    /**
+     * Create a reduced resolution source from the raw (Y) plane of an image.
+     * <p>
+     * Each block of {@code factor * factor} pixels is averaged into a single pixel
+     * while stripping the padding; this is the only pass over the full plane.
+     * Mirroring and rotation are then applied lazily, as usual.
+     * Any pixels left over at the right/bottom edges are dropped.
+     *
+     * @param plane       The image data. Padding (see rowStride/pixelStride) and u/v data
+     *                    is allowed and will be skipped.
+     *                    The position of the buffer is not preserved.
+     * @param width       Width of the image
+     * @param height      Height of the image
+     * @param rowStride   The distance between the start of two consecutive rows
+     *                    of pixels in the image.
+     * @param pixelStride The distance between two consecutive pixel values in a row of pixels.
+     * @param factor      to reduce the width and height by; e.g. {@code 2} or {@code 4}
+     * @param mirror      {@code true} to flip the data around the vertical axis
+     * @param degrees     to rotate clockwise (after mirroring); accepts {@code 90, 180, 270}.
+     *                    Any other angle is treated as {@code 0}. No error is thrown.
+     * @param lease       (optional) to borrow the buffers from.
+     *
+     * @return the new source, {@code width / factor} by {@code height / factor}
+     * before rotating.
+     */
+    @NonNull
+    public static PlaneLuminanceSource downsample(@NonNull final ByteBuffer plane,
+                                                  final int width,
+                                                  final int height,
+                                                  final int rowStride,
+                                                  final int pixelStride,
+                                                  final int factor,
+                                                  final boolean mirror,
+                                                  final int degrees,
+                                                  @Nullable final FrameBufferPool.Lease lease) {
+        return downsample(plane, rowStride, pixelStride, 0, 0, width, height,
+                          factor, mirror, degrees, lease);
+    }
+
+    /**
+     * Create a reduced resolution source from a region of the raw (Y) plane of an image.
+     * <p>
+     * Only the region is read; each block of {@code factor * factor} pixels is averaged
+     * into a single pixel while stripping the padding.
+     * Mirroring and rotation are then applied lazily to the region, as usual.
+     * Any pixels left over at the right/bottom edges of the region are dropped.
+     *
+     * @param plane       The image data. Padding (see rowStride/pixelStride) and u/v data
+     *                    is allowed and will be skipped.
+     *                    The position of the buffer is not preserved.
+     * @param rowStride   The distance between the start of two consecutive rows
+     *                    of pixels in the image.
+     * @param pixelStride The distance between two consecutive pixel values in a row of pixels.
+     * @param left        The left edge of the region, in the (unrotated) image
+     * @param top         The top edge of the region, in the (unrotated) image
+     * @param width       Width of the region
+     * @param height      Height of the region
+     * @param factor      to reduce the width and height by; e.g. {@code 2} or {@code 4}
+     * @param mirror      {@code true} to flip the region around the vertical axis
+     * @param degrees     to rotate clockwise (after mirroring); accepts {@code 90, 180, 270}.
+     *                    Any other angle is treated as {@code 0}. No error is thrown.
+     * @param lease       (optional) to borrow the buffers from.
+     *
+     * @return the new source, {@code width / factor} by {@code height / factor}
+     * before rotating.
+     */
+    @NonNull
+    public static PlaneLuminanceSource downsample(@NonNull final ByteBuffer plane,
+                                                  final int rowStride,
+                                                  final int pixelStride,
+                                                  final int left,
+                                                  final int top,
+                                                  final int width,
+                                                  final int height,
+                                                  final int factor,
+                                                  final boolean mirror,
+                                                  final int degrees,
+                                                  @Nullable final FrameBufferPool.Lease lease) {
+        final int smallWidth = width / factor;
+        final int smallHeight = height / factor;
+        final int area = factor * factor;
+
+        final byte[] small = lease != null ? lease.acquire(smallWidth * smallHeight)
+                                           : new byte[smallWidth * smallHeight];
+
+        // Read 'factor' rows at a time; the last row is not guaranteed to be padded.
+        final int rowLength = (smallWidth * factor - 1) * pixelStride + 1;
+        final byte[] band = lease != null ? lease.acquire(factor * rowLength)
+                                          : new byte[factor * rowLength];
+        final int blockStep = factor * pixelStride;
+        final int regionStart = top * rowStride + left * pixelStride;
+
+        int dst = 0;
+        for (int y = 0; y < smallHeight; y++) {
+            for (int r = 0; r < factor; r++) {
+                plane.position(regionStart + (y * factor + r) * rowStride);
+                plane.get(band, r * rowLength, rowLength);
+            }
+            for (int x = 0, block = 0; x < smallWidth; x++, block += blockStep) {
+                int sum = 0;
+                for (int r = 0, rowStart = block; r < factor; r++, rowStart += rowLength) {
+                    for (int c = 0, p = rowStart; c < factor; c++, p += pixelStride) {
+                        sum += band[p] & 0xFF;
+                    }
+                }
+                small[dst++] = (byte) ((sum + area / 2) / area);
+            }
+        }
+
+        return new PlaneLuminanceSource(ByteBuffer.wrap(small), smallWidth, smallHeight,
+                                        smallWidth, 1, mirror, degrees, lease);
+    }
+
+    private static int getOrientedWidth(final int width,
+                                        final int height,
+                                        final int degrees) {
+        final int rotation = SimpleLuminanceSource.normaliseRotation(degrees);
+        return rotation == 90 || rotation == 270 ? height : width;
+    }
+
+    private static int getOrientedHeight(final int width,
+                                         final int height,
+                                         final int degrees) {
+        final int rotation = SimpleLuminanceSource.normaliseRotation(degrees);
+        return rotation == 90 || rotation == 270 ? width : height;
+    }
+
+    /*
+     * The mapping of an output pixel (x,y) back to the plane.
+     * Mirroring is done first, so we only need the distance between two pixels
+     * along the (possibly mirrored) x-axis of the plane: mirrorStep.
+     */
+
+    private static int getOrigin(final int width,
+                                 final int height,
+                                 final int rowStride,
+                                 final int pixelStride,
+                                 final boolean mirror,
+                                 final int degrees) {
+        final int mirrorOrigin = mirror ? (width - 1) * pixelStride : 0;
+        final int mirrorStep = mirror ? -pixelStride : pixelStride;
+        switch (SimpleLuminanceSource.normaliseRotation(degrees)) {
+            case 90:
+                return mirrorOrigin + (height - 1) * rowStride;
+            case 180:
+                return mirrorOrigin + (width - 1) * mirrorStep + (height - 1) * rowStride;
+            case 270:
+                return mirrorOrigin + (width - 1) * mirrorStep;
+            default:
+                return mirrorOrigin;
+        }
+    }
+
+    private static int getStepX(final int rowStride,
+                                final int pixelStride,
+                                final boolean mirror,
+                                final int degrees) {
+        final int mirrorStep = mirror ? -pixelStride : pixelStride;
+        switch (SimpleLuminanceSource.normaliseRotation(degrees)) {
+            case 90:
+                return -rowStride;
+            case 180:
+                return -mirrorStep;
+            case 270:
+                return rowStride;
+            default:
+                return mirrorStep;
+        }
+    }
+
+    private static int getStepY(final int rowStride,
+                                final int pixelStride,
+                                final boolean mirror,
+                                final int degrees) {
+        final int mirrorStep = mirror ? -pixelStride : pixelStride;
+        switch (SimpleLuminanceSource.normaliseRotation(degrees)) {
+            case 90:
+                return mirrorStep;
+            case 180:
+                return -rowStride;
+            case 270:
+                return -mirrorStep;
+            default:
+                return rowStride;
+        }
+    }
+
+    @Override
+    @NonNull
+    public byte[] getRow(final int y,
+                         @Nullable byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        checkValid();
+        DecodeDeadline.check();
+
+        final int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        if (matrix != null) {
+            System.arraycopy(matrix, y * width, row, 0, width);
+            return row;
+        }
+
+        if (stepX == 1) {
+            plane.position(origin + y * stepY);
+            plane.get(row, 0, width);
+        } else {
+            int src = origin + y * stepY;
+            for (int x = 0; x < width; x++) {
+                row[x] = plane.get(src);
+                src += stepX;
+            }
+        }
+        if (inverted) {
+            SimpleLuminanceSource.invert(row, 0, row, 0, width);
+        }
+        return row;
+    }
+
+    @Override
+    @NonNull
+    public byte[] getMatrix() {
+        checkValid();
+        DecodeDeadline.check();
+        if (matrix == null) {
+            final int width = getWidth();
+            final int height = getHeight();
+            final int len = width * height;
+            final byte[] dest = lease != null ? lease.acquire(len) : new byte[len];
+            if (invertedView != null && invertedView.matrix != null) {
+                // Typically the reader already went over the original; don't read the plane again
+                SimpleLuminanceSource.invert(invertedView.matrix, 0, dest, 0, len);
+            } else {
+                copy(dest);
+                if (inverted) {
+                    SimpleLuminanceSource.invert(dest, 0, dest, 0, len);
+                }
+            }
+            matrix = dest;
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    /**
+     * Crop the image. This does not copy or read any data.
+     *
+     * @param left   The left coordinate, which must be in [0,getWidth())
+     * @param top    The top coordinate, which must be in [0,getHeight())
+     * @param width  The width of the rectangle to crop.
+     * @param height The height of the rectangle to crop.
+     *
+     * @return the cropped view
+     */
+    @Override
+    @NonNull
+    public PlaneLuminanceSource crop(final int left,
+                                     final int top,
+                                     final int width,
+                                     final int height) {
+        if (left < 0 || top < 0
+            || left + width > getWidth() || top + height > getHeight()) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        return new PlaneLuminanceSource(plane, width, height, pixelStride,
+                                        origin + left * stepX + top * stepY, stepX, stepY,
+                                        inverted, lease);
+    }
+
+    /**
+     * Get an inverted view of this source. This does not copy or read any data.
+     * <p>
+     * Rows are inverted as they are read. If the matrix of this source was already
+     * created, the matrix of the view is inverted from it, instead of reading the plane again.
+     * The view is cached, so repeated calls return the same instance,
+     * and inverting the view returns this source.
+     *
+     * @return the inverted view
+     */
+    @Override
+    @NonNull
+    public PlaneLuminanceSource invert() {
+        if (invertedView == null) {
+            invertedView = new PlaneLuminanceSource(plane, getWidth(), getHeight(), pixelStride,
+                                                    origin, stepX, stepY, !inverted, lease);
+            invertedView.invertedView = this;
+        }
+        return invertedView;
+    }
+
+    /**
+     * Get a view of evenly spaced rows of the image. This does not copy or read any data.
+     * <p>
+     * Intended for the 1D readers, which only need a few lines through the barcode.
+     * Row {@code i} of the view is row {@code top + i * spacing} of this image.
+     *
+     * @param top     The first row, which must be in [0,getHeight())
+     * @param count   The number of rows.
+     * @param spacing The distance between two consecutive rows.
+     *
+     * @return the sampled view
+     */
+    @NonNull
+    public PlaneLuminanceSource sampleRows(final int top,
+                                           final int count,
+                                           final int spacing) {
+        if (top < 0 || count < 1 || spacing < 1
+            || top + (count - 1) * spacing >= getHeight()) {
+            throw new IllegalArgumentException("Rows do not fit within image data.");
+        }
+        return new PlaneLuminanceSource(plane, getWidth(), count, pixelStride,
+                                        origin + top * stepY, stepX, stepY * spacing,
+                                        inverted, lease);
+    }
+
+    @Override
+    public boolean isRotateSupported() {
+        return true;
+    }
+
+    /**
+     * Rotate the image by 90 degrees CCW. This does not copy or read any data.
+     *
+     * @return the rotated view
+     */
+    @Override
+    @NonNull
+    public PlaneLuminanceSource rotateCounterClockwise() {
+        // The new (x,y) is the old (width - 1 - y, x)
+        //noinspection SuspiciousNameCombination
+        return new PlaneLuminanceSource(plane, getHeight(), getWidth(), pixelStride,
+                                        origin + (getWidth() - 1) * stepX, stepY, -stepX,
+                                        inverted, lease);
+    }
+
+    /**
+     * Rotate the image by 45 degrees CCW.
+     * This copies the image.
+     *
+     * @return the rotated image
+     *
+     * @see SimpleLuminanceSource#rotateCounterClockwise45()
+     */
+    @Override
+    @NonNull
+    public SimpleLuminanceSource rotateCounterClockwise45() {
+        return SimpleLuminanceSource.rotateCounterClockwise45(getMatrix(),
+                                                              getWidth(), getHeight(),
+                                                              lease);
+    }
+
+    /**
+     * Copy the image to the given array in a single pass over the plane.
+     * <p>
+     * The plane is always read sequentially, one line of pixels at a time, using a bulk get.
+     * When the output rows run along the columns of the plane (i.e. a 90/270 rotation),
+     * each line read from the plane becomes a column of the output. To keep the writes
+     * cache friendly, we then read a band of {@link SimpleLuminanceSource#TILE_SIZE} lines
+     * and write the output in short row segments.
+     *
+     * @param dest to copy to, must be at least {@code width * height}
+     */
+    private void copy(@NonNull final byte[] dest) {
+        final int width = getWidth();
+        final int height = getHeight();
+
+        if (stepX == 1) {
+            // Straight copy of each row, we only need to drop the padding.
+            for (int y = 0; y < height; y++) {
+                plane.position(origin + y * stepY);
+                plane.get(dest, y * width, width);
+            }
+            return;
+        }
+
+        // Are the output rows (x-axis) running along the rows of the plane?
+        final boolean rowWise = Math.abs(stepX) == pixelStride;
+        if (!rowWise && Math.abs(stepY) != pixelStride) {
+            // Neither the rows nor the columns are contiguous; i.e. sampled rows
+            // of a rotated image. There are only a few of those, so just walk them.
+            int dst = 0;
+            for (int y = 0; y < height; y++) {
+                int src = origin + y * stepY;
+                for (int x = 0; x < width; x++) {
+                    dest[dst++] = plane.get(src);
+                    src += stepX;
+                }
+            }
+            return;
+        }
+
+        // Length of a line (row or column) in the output
+        final int lineLength = rowWise ? width : height;
+        // The number of lines
+        final int lines = rowWise ? height : width;
+        // Distance in the plane between two consecutive pixels/lines
+        final int pixelStep = rowWise ? stepX : stepY;
+        final int lineStep = rowWise ? stepY : stepX;
+
+        final int span = (lineLength - 1) * pixelStride + 1;
+        // The index in a line buffer of the first pixel, and the step to the next one
+        final int srcStart = pixelStep > 0 ? 0 : span - 1;
+        final int srcStep = pixelStep > 0 ? pixelStride : -pixelStride;
+
+        if (rowWise) {
+            final byte[] line = lease != null ? lease.acquire(span) : new byte[span];
+            for (int i = 0; i < lines; i++) {
+                readLine(origin + i * lineStep, pixelStep, lineLength, line, 0, span);
+
+                int src = srcStart;
+                int dst = i * width;
+                for (int p = 0; p < lineLength; p++) {
+                    dest[dst++] = line[src];
+                    src += srcStep;
+                }
+            }
+        } else {
+            final int bandSize = SimpleLuminanceSource.TILE_SIZE;
+            final int bandLength = bandSize * span;
+            final byte[] band = lease != null ? lease.acquire(bandLength)
+                                              : new byte[bandLength];
+            for (int i0 = 0; i0 < lines; i0 += bandSize) {
+                final int count = Math.min(bandSize, lines - i0);
+                for (int t = 0; t < count; t++) {
+                    readLine(origin + (i0 + t) * lineStep, pixelStep, lineLength,
+                             band, t * span, span);
+                }
+
+                // Line i0 + t of the band is output column i0 + t.
+                int src = srcStart;
+                int dst = i0;
+                for (int p = 0; p < lineLength; p++) {
+                    for (int t = 0, b = src; t < count; t++, b += span) {
+                        dest[dst + t] = band[b];
+                    }
+                    src += srcStep;
+                    dst += width;
+                }
+            }
+        }
+    }
+
+    /**
+     * Bulk read a line of pixels from the plane. The line is read in the order
+     * it is stored in the plane, regardless of the direction we need it in.
+     *
+     * @param first      index in the plane of the first pixel of the line
+     * @param pixelStep  distance in the plane to the next pixel of the line
+     * @param lineLength number of pixels in the line
+     * @param buffer     to read into
+     * @param offset     in the buffer
+     * @param span       number of bytes to read
+     */
+    private void readLine(final int first,
+                          final int pixelStep,
+                          final int lineLength,
+                          @NonNull final byte[] buffer,
+                          final int offset,
+                          final int span) {
+        final int last = first + (lineLength - 1) * pixelStep;
+        plane.position(Math.min(first, last));
+        plane.get(buffer, offset, span);
+    }
+
+    /**
+     * Make sure the frame we're reading from is still available.
+     *
+     * @throws IllegalStateException if the frame was released
+     */
+    private void checkValid() {
+        if (lease != null && lease.isClosed(leaseGeneration)) {
+            throw new IllegalStateException("The frame was already released");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Remembers where the last barcode (or a possible one) was seen,
+ * so the next frames can try that region first.
+ * <p>
+ * A region is kept for a number of frames after it was last seen. Each frame which finds
+ * points again moves the region and restarts the count. A change in frame size, e.g. when
+ * the device is rotated, forgets the region.
+ * <p>
+ * The region is in the coordinates of the decoded full frame.
+ * <p>
+ * Not thread-safe; owned by the analyzer.
+ */
+final class RegionTracker {
+
+    /** The number of frames a region is kept after it was last seen. */
+    private final int holdFrames;
+
+    @NonNull
+    private final Rect region = new Rect();
+    private int frameWidth;
+    private int frameHeight;
+    /** The number of frames left before the region is forgotten; {@code 0} for none. */
+    private int remaining;
+
+    /**
+     * Constructor.
+     *
+     * @param holdFrames the number of frames to keep a region after it was last seen
+     */
+    RegionTracker(final int holdFrames) {
+        this.holdFrames = holdFrames;
+    }
+
+    /**
+     * Get the region to try first.
+     *
+     * @param width  of the current full frame
+     * @param height of the current full frame
+     * @param out    receives the region
+     *
+     * @return {@code true} if there is a region; {@code false} if {@code out} is unchanged
+     */
+    boolean getRegion(final int width,
+                      final int height,
+                      @NonNull final Rect out) {
+        if (remaining == 0) {
+            return false;
+        }
+        if (width != frameWidth || height != frameHeight) {
+            remaining = 0;
+            return false;
+        }
+        out.set(region);
+        return true;
+    }
+
+    /**
+     * Points were found in the current frame.
+     *
+     * @param width  of the current full frame
+     * @param height of the current full frame
+     * @param found  the region around the points
+     */
+    void onFound(final int width,
+                 final int height,
+                 @NonNull final Rect found) {
+        frameWidth = width;
+        frameHeight = height;
+        region.set(found);
+        remaining = holdFrames;
+    }
+
+    /**
+     * Nothing was found in the current frame.
+     */
+    void onMissed() {
+        if (remaining > 0) {
+            remaining--;
+        }
+    }
+}
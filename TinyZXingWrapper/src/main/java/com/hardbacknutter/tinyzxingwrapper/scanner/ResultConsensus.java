@@ -0,0 +1,141 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Only accepts a result after a number of frames decoded the same barcode
+ * within a time window.
+ * <p>
+ * A misread of a damaged 1D barcode is rarely repeated exactly on the next frames,
+ * while a real barcode is; so a few agreeing reads with the cheap decoder settings
+ * are as reliable as a single read with {@link com.google.zxing.DecodeHintType#TRY_HARDER}.
+ * 2D barcodes have their own error correction, and are by default accepted on the first read.
+ * <p>
+ * Shared by all analyzers; this class is thread-safe.
+ */
+final class ResultConsensus {
+
+    /** The maximum number of reads remembered; older ones are dropped first. */
+    private static final int MAX_READS = 32;
+
+    /** The number of agreeing reads needed per format; absent for a single read. */
+    @NonNull
+    private final Map<BarcodeFormat, Integer> votes;
+    private final long windowNanos;
+
+    /** The reads not (yet) accepted; oldest first. */
+    @GuardedBy("this")
+    @NonNull
+    private final Deque<Read> reads = new ArrayDeque<>();
+
+    /**
+     * Constructor.
+     *
+     * @param votes       the number of agreeing reads needed per format;
+     *                    formats not present are accepted on the first read
+     * @param windowNanos the time in which the reads must be made
+     */
+    ResultConsensus(@NonNull final Map<BarcodeFormat, Integer> votes,
+                    final long windowNanos) {
+        this.votes = new EnumMap<>(votes);
+        this.windowNanos = windowNanos;
+    }
+
+    /**
+     * Check whether any format needs more than a single read.
+     *
+     * @param votes the number of agreeing reads needed per format
+     *
+     * @return {@code true} if a consensus is needed for any format
+     */
+    static boolean isNeeded(@NonNull final Map<BarcodeFormat, Integer> votes) {
+        return votes.values().stream().anyMatch(count -> count > 1);
+    }
+
+    /**
+     * Record a read, and check whether it completes a consensus.
+     * The reads which agreed are forgotten once accepted.
+     *
+     * @param result decoded
+     * @param now    the current {@link System#nanoTime()}
+     *
+     * @return {@code true} if the result can be delivered
+     */
+    synchronized boolean accept(@NonNull final Result result,
+                                final long now) {
+        final BarcodeFormat format = result.getBarcodeFormat();
+        final int needed = votes.getOrDefault(format, 1);
+        if (needed <= 1) {
+            return true;
+        }
+
+        while (!reads.isEmpty() && now - reads.peekFirst().nanos > windowNanos) {
+            reads.removeFirst();
+        }
+
+        final String text = result.getText();
+        int agreeing = 1;
+        for (final Read read : reads) {
+            if (read.matches(format, text)) {
+                agreeing++;
+            }
+        }
+        if (agreeing >= needed) {
+            final Iterator<Read> it = reads.iterator();
+            while (it.hasNext()) {
+                if (it.next().matches(format, text)) {
+                    it.remove();
+                }
+            }
+            return true;
+        }
+
+        if (reads.size() == MAX_READS) {
+            reads.removeFirst();
+        }
+        reads.addLast(new Read(format, text, now));
+        return false;
+    }
+
+    /**
+     * Forget all reads.
+     */
+    synchronized void clear() {
+        reads.clear();
+    }
+
+    /**
+     * A single read of a barcode.
+     */
+    private static final class Read {
+
+        @NonNull
+        final BarcodeFormat format;
+        final String text;
+        final long nanos;
+
+        Read(@NonNull final BarcodeFormat format,
+             final String text,
+             final long nanos) {
+            this.format = format;
+            this.text = text;
+            this.nanos = nanos;
+        }
+
+        boolean matches(@NonNull final BarcodeFormat format,
+                        final String text) {
+            return this.format == format && Objects.equals(this.text, text);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import android.view.Choreographer;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Hands the possible result points from the analyzers to the
+ * {@link DecoderResultPointsListener} on the main thread.
+ * <p>
+ * The analyzers publish the points of a frame into the back buffer; a later frame simply
+ * overwrites them. The listener is called at most once per display frame, from a
+ * {@link Choreographer} callback, with the front buffer. Nothing is allocated
+ * after construction.
+ * <p>
+ * This class is thread-safe.
+ */
+final class ResultPointChannel
+        implements Choreographer.FrameCallback {
+
+    /** The maximum number of points per frame; any others are dropped. */
+    static final int MAX_POINTS = 20;
+
+    private final Object lock = new Object();
+
+    /** The points last published, as x,y pairs. */
+    @GuardedBy("lock")
+    @NonNull
+    private float[] back = new float[MAX_POINTS * 2];
+    @GuardedBy("lock")
+    private int backCount;
+    @GuardedBy("lock")
+    private int backWidth;
+    @GuardedBy("lock")
+    private int backHeight;
+    /** Whether a frame callback is pending. */
+    @GuardedBy("lock")
+    private boolean scheduled;
+
+    /** Main thread only. The points being delivered, as x,y pairs. */
+    @NonNull
+    private float[] front = new float[MAX_POINTS * 2];
+
+    /** The main thread choreographer; {@code null} while not attached. */
+    @GuardedBy("lock")
+    @Nullable
+    private Choreographer choreographer;
+    @Nullable
+    private volatile DecoderResultPointsListener listener;
+
+    /**
+     * Start delivering points. Must be called on the main thread.
+     */
+    void attach() {
+        final Choreographer current = Choreographer.getInstance();
+        synchronized (lock) {
+            choreographer = current;
+        }
+    }
+
+    /**
+     * Stop delivering points; any pending update is dropped.
+     */
+    void detach() {
+        synchronized (lock) {
+            if (choreographer != null) {
+                choreographer.removeFrameCallback(this);
+                choreographer = null;
+            }
+            scheduled = false;
+        }
+    }
+
+    /**
+     * Set the listener to deliver to.
+     *
+     * @param listener a listener; can be {@code null} for none.
+     */
+    void setListener(@Nullable final DecoderResultPointsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Check whether there is anyone to deliver to.
+     *
+     * @return {@code true} if a listener is set
+     */
+    boolean hasListener() {
+        return listener != null;
+    }
+
+    /**
+     * Publish the points of a frame. They are copied; the caller can reuse the array.
+     *
+     * @param width  of the full (oriented) frame
+     * @param height of the full (oriented) frame
+     * @param points x,y pairs
+     * @param count  the number of points
+     */
+    void publish(final int width,
+                 final int height,
+                 @NonNull final float[] points,
+                 final int count) {
+        synchronized (lock) {
+            if (choreographer == null) {
+                return;
+            }
+            backCount = Math.min(count, MAX_POINTS);
+            System.arraycopy(points, 0, back, 0, backCount * 2);
+            backWidth = width;
+            backHeight = height;
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+            // The choreographer can be called from any thread. Posting while holding
+            // the lock makes sure a concurrent detach() removes the callback again.
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(final long frameTimeNanos) {
+        final int count;
+        final int width;
+        final int height;
+        synchronized (lock) {
+            if (choreographer == null || !scheduled) {
+                // detached in the meantime
+                return;
+            }
+            scheduled = false;
+            final float[] swap = front;
+            front = back;
+            back = swap;
+            count = backCount;
+            width = backWidth;
+            height = backHeight;
+        }
+
+        final DecoderResultPointsListener current = listener;
+        if (current != null) {
+            current.onResultPoints(width, height, front, count);
+        }
+    }
+}
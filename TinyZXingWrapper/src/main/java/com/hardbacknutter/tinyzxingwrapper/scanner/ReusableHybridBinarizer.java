@@ -0,0 +1,337 @@
+/*
+ * Copyright 2009 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+
+/**
+ * {@link com.google.zxing.common.HybridBinarizer} which reuses its {@link BitMatrix}
+ * and block threshold arrays across frames.
+ * <p>
+ * The algorithm is unchanged: a local threshold is calculated for each 8x8 block,
+ * based on the 5x5 blocks around it. As with the original, {@link #getBlackRow} uses
+ * the global histogram algorithm.
+ * <p>
+ * The buffers are owned by a {@link Buffers} instance, which is typically owned by a
+ * {@link DefaultDecoder}. The matrix returned by {@link #getBlackMatrix()} is only valid
+ * until the next binarizer using the same buffers calculates its matrix; i.e. for the
+ * duration of a single decode. Binarizers created with {@link #createBinarizer} (e.g. for a
+ * cropped or rotated bitmap) get their own buffers, as the original may still be in use.
+ */
+public final class ReusableHybridBinarizer
+        extends GlobalHistogramBinarizer {
+
+    // This class uses 5x5 blocks to compute local luminance, where each block is 8x8 pixels.
+    // So this is the smallest dimension in each axis we can accept.
+    private static final int BLOCK_SIZE_POWER = 3;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SIZE_POWER;
+    private static final int BLOCK_SIZE_MASK = BLOCK_SIZE - 1;
+    private static final int MINIMUM_DIMENSION = BLOCK_SIZE * 5;
+    private static final int MIN_DYNAMIC_RANGE = 24;
+
+    @NonNull
+    private final Buffers buffers;
+    @Nullable
+    private BitMatrix matrix;
+
+    /**
+     * Constructor.
+     *
+     * @param source  to binarize
+     * @param buffers (optional) to reuse; {@code null} to use buffers for this instance only
+     */
+    public ReusableHybridBinarizer(@NonNull final LuminanceSource source,
+                                   @Nullable final Buffers buffers) {
+        super(source);
+        this.buffers = buffers != null ? buffers : new Buffers();
+    }
+
+    /**
+     * Calculates the final BitMatrix once for all requests. This could be called once from the
+     * constructor instead, but there are some advantages to doing it lazily, such as making
+     * profiling easier, and not doing heavy lifting when callers don't expect it.
+     */
+    @Override
+    @NonNull
+    public BitMatrix getBlackMatrix()
+            throws NotFoundException {
+        if (matrix != null) {
+            return matrix;
+        }
+        final LuminanceSource source = getLuminanceSource();
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        if (width >= MINIMUM_DIMENSION && height >= MINIMUM_DIMENSION) {
+            final byte[] luminances = source.getMatrix();
+            int subWidth = width >> BLOCK_SIZE_POWER;
+            if ((width & BLOCK_SIZE_MASK) != 0) {
+                subWidth++;
+            }
+            int subHeight = height >> BLOCK_SIZE_POWER;
+            if ((height & BLOCK_SIZE_MASK) != 0) {
+                subHeight++;
+            }
+            final int[][] blackPoints = buffers.getBlackPoints(subWidth, subHeight);
+            calculateBlackPoints(luminances, subWidth, subHeight, width, height, blackPoints);
+
+            final BitMatrix newMatrix = buffers.getMatrix(width, height);
+            calculateThresholdForBlock(luminances, subWidth, subHeight, width, height,
+                                       blackPoints, newMatrix);
+            matrix = newMatrix;
+        } else {
+            // If the image is too small, fall back to the global histogram approach.
+            matrix = super.getBlackMatrix();
+        }
+        return matrix;
+    }
+
+    @Override
+    @NonNull
+    public Binarizer createBinarizer(@NonNull final LuminanceSource source) {
+        return new ReusableHybridBinarizer(source, null);
+    }
+
+    /**
+     * For each block in the image, calculate the average black point using a 5x5 grid
+     * of the blocks around it. Also handles the corner cases (fractional blocks are computed
+     * based on the last pixels in the row/column which are also used in the previous block).
+     */
+    private static void calculateThresholdForBlock(@NonNull final byte[] luminances,
+                                                   final int subWidth,
+                                                   final int subHeight,
+                                                   final int width,
+                                                   final int height,
+                                                   @NonNull final int[][] blackPoints,
+                                                   @NonNull final BitMatrix matrix) {
+        final int maxYOffset = height - BLOCK_SIZE;
+        final int maxXOffset = width - BLOCK_SIZE;
+        for (int y = 0; y < subHeight; y++) {
+            int yoffset = y << BLOCK_SIZE_POWER;
+            if (yoffset > maxYOffset) {
+                yoffset = maxYOffset;
+            }
+            final int top = cap(y, subHeight - 3);
+            for (int x = 0; x < subWidth; x++) {
+                int xoffset = x << BLOCK_SIZE_POWER;
+                if (xoffset > maxXOffset) {
+                    xoffset = maxXOffset;
+                }
+                final int left = cap(x, subWidth - 3);
+                int sum = 0;
+                for (int z = -2; z <= 2; z++) {
+                    final int[] blackRow = blackPoints[top + z];
+                    sum += blackRow[left - 2] + blackRow[left - 1] + blackRow[left]
+                           + blackRow[left + 1] + blackRow[left + 2];
+                }
+                final int average = sum / 25;
+                thresholdBlock(luminances, xoffset, yoffset, average, width, matrix);
+            }
+        }
+    }
+
+    private static int cap(final int value,
+                           final int max) {
+        return value < 2 ? 2 : Math.min(value, max);
+    }
+
+    /**
+     * Applies a single threshold to a block of pixels.
+     */
+    private static void thresholdBlock(@NonNull final byte[] luminances,
+                                       final int xoffset,
+                                       final int yoffset,
+                                       final int threshold,
+                                       final int stride,
+                                       @NonNull final BitMatrix matrix) {
+        for (int y = 0, offset = yoffset * stride + xoffset; y < BLOCK_SIZE;
+             y++, offset += stride) {
+            for (int x = 0; x < BLOCK_SIZE; x++) {
+                // Comparison needs to be <= so that black == 0 pixels are black
+                // even if the threshold is 0.
+                if ((luminances[offset + x] & 0xFF) <= threshold) {
+                    matrix.set(xoffset + x, yoffset + y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates a single black point for each block of pixels and saves it away.
+     * See the following thread for a discussion of this algorithm:
+     * http://groups.google.com/group/zxing/browse_thread/thread/d06efa2c35a7ddc0
+     */
+    private static void calculateBlackPoints(@NonNull final byte[] luminances,
+                                             final int subWidth,
+                                             final int subHeight,
+                                             final int width,
+                                             final int height,
+                                             @NonNull final int[][] blackPoints) {
+        final int maxYOffset = height - BLOCK_SIZE;
+        final int maxXOffset = width - BLOCK_SIZE;
+        for (int y = 0; y < subHeight; y++) {
+            int yoffset = y << BLOCK_SIZE_POWER;
+            if (yoffset > maxYOffset) {
+                yoffset = maxYOffset;
+            }
+            for (int x = 0; x < subWidth; x++) {
+                int xoffset = x << BLOCK_SIZE_POWER;
+                if (xoffset > maxXOffset) {
+                    xoffset = maxXOffset;
+                }
+                int sum = 0;
+                int min = 0xFF;
+                int max = 0;
+                for (int yy = 0, offset = yoffset * width + xoffset; yy < BLOCK_SIZE;
+                     yy++, offset += width) {
+                    for (int xx = 0; xx < BLOCK_SIZE; xx++) {
+                        final int pixel = luminances[offset + xx] & 0xFF;
+                        sum += pixel;
+                        // still looking for good contrast
+                        if (pixel < min) {
+                            min = pixel;
+                        }
+                        if (pixel > max) {
+                            max = pixel;
+                        }
+                    }
+                    // short-circuit min/max tests once dynamic range is met
+                    if (max - min > MIN_DYNAMIC_RANGE) {
+                        // finish the rest of the rows quickly
+                        for (yy++, offset += width; yy < BLOCK_SIZE; yy++, offset += width) {
+                            for (int xx = 0; xx < BLOCK_SIZE; xx++) {
+                                sum += luminances[offset + xx] & 0xFF;
+                            }
+                        }
+                    }
+                }
+
+                // The default estimate is the average of the values in the block.
+                int average = sum >> (BLOCK_SIZE_POWER * 2);
+                if (max - min <= MIN_DYNAMIC_RANGE) {
+                    // If variation within the block is low, assume this is a block with only
+                    // light or only dark pixels. In that case we do not want to use the
+                    // average, as it would divide this low contrast area into black and white
+                    // pixels, essentially creating data out of noise.
+                    //
+                    // The default assumption is that the block is light/background.
+                    // Since no estimate for the level of dark pixels exists locally,
+                    // use half the min for the block.
+                    average = min / 2;
+
+                    if (y > 0 && x > 0) {
+                        // Correct the "white background" assumption for blocks that have
+                        // neighbors by comparing the pixels in this block to the previously
+                        // calculated black points. This is based on the fact that dark barcode
+                        // symbology is always surrounded by some amount of light background
+                        // for which reasonable black point estimates were made. The bp
+                        // estimated at the boundaries is used for the interior.
+
+                        // The (min < bp) is arbitrary but works better than other heuristics
+                        // that were tried.
+                        final int averageNeighborBlackPoint =
+                                (blackPoints[y - 1][x] + (2 * blackPoints[y][x - 1])
+                                 + blackPoints[y - 1][x - 1]) / 4;
+                        if (min < averageNeighborBlackPoint) {
+                            average = averageNeighborBlackPoint;
+                        }
+                    }
+                }
+                blackPoints[y][x] = average;
+            }
+        }
+    }
+
+    /**
+     * The buffers shared by consecutive {@link ReusableHybridBinarizer}s.
+     * <p>
+     * A frame is often decoded at two sizes, e.g. a tracked region and then the full
+     * scan window; so the buffers for the two most recently used sizes are kept.
+     * <p>
+     * Not thread-safe; owned by a single decoder.
+     */
+    public static final class Buffers {
+
+        /** The number of sizes for which the buffers are kept. */
+        private static final int SLOTS = 2;
+
+        @NonNull
+        private final BitMatrix[] matrices = new BitMatrix[SLOTS];
+        @NonNull
+        private final int[][][] blackPoints = new int[SLOTS][][];
+        /** The slot used least recently; replaced when a new size is needed. */
+        private int matrixVictim;
+        private int blackPointsVictim;
+
+        /**
+         * Get a cleared matrix of the given size.
+         *
+         * @param width  of the matrix
+         * @param height of the matrix
+         *
+         * @return matrix
+         */
+        @NonNull
+        BitMatrix getMatrix(final int width,
+                            final int height) {
+            for (int i = 0; i < SLOTS; i++) {
+                final BitMatrix matrix = matrices[i];
+                if (matrix != null && matrix.getWidth() == width
+                    && matrix.getHeight() == height) {
+                    matrixVictim = (i + 1) % SLOTS;
+                    matrix.clear();
+                    return matrix;
+                }
+            }
+            final int slot = matrixVictim;
+            matrixVictim = (slot + 1) % SLOTS;
+            matrices[slot] = new BitMatrix(width, height);
+            return matrices[slot];
+        }
+
+        /**
+         * Get an array for the black points of the given number of blocks.
+         * The content is undefined; all values are overwritten by the caller.
+         *
+         * @param subWidth  the number of blocks in a row
+         * @param subHeight the number of rows of blocks
+         *
+         * @return array
+         */
+        @NonNull
+        int[][] getBlackPoints(final int subWidth,
+                               final int subHeight) {
+            for (int i = 0; i < SLOTS; i++) {
+                final int[][] points = blackPoints[i];
+                if (points != null && points.length == subHeight
+                    && points[0].length == subWidth) {
+                    blackPointsVictim = (i + 1) % SLOTS;
+                    return points;
+                }
+            }
+            final int slot = blackPointsVictim;
+            blackPointsVictim = (slot + 1) % SLOTS;
+            blackPoints[slot] = new int[subHeight][subWidth];
+            return blackPoints[slot];
+        }
+    }
+}
@@ -12,7 +12,16 @@ public enum ScanMode {
     /**
      * Keep scanning, returning the results after each scan.
      */
-    Continuous(1);
+    Continuous(1),
+    /**
+     * Do a single scan, stop the scanner, and return all barcodes found in the frame.
+     * <p>
+     * The full scan window is decoded at once;
+     * scanline and coarse-to-fine decoding are not used in this mode.
+     *
+     * @see DecoderResultListener#onMultipleResults(java.util.List)
+     */
+    Multiple(2);
 
     private final int mode;
 
@@ -32,6 +41,8 @@ public enum ScanMode {
         switch (mode) {
             case 1:
                 return Continuous;
+            case 2:
+                return Multiple;
             case 0:
             default:
                 return Single;
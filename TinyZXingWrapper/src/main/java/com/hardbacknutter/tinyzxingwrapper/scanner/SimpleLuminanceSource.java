@@ -5,9 +5,15 @@ import androidx.annotation.Nullable;
 
 import com.google.zxing.LuminanceSource;
 
+import java.nio.ByteBuffer;
+
 /**
  * Stripped {@link com.google.zxing.PlanarYUVLuminanceSource}
- * with added rotation logic (NOT according to the interface for now!)
+ * with added rotation and cropping logic.
+ * <p>
+ * Use {@link #transform(ByteBuffer, int, int, int, int, boolean, int, FrameBufferPool.Lease)}
+ * to create a source directly from a camera plane; it strips, mirrors and rotates the data
+ * in a single pass.
  * <p>
  * The rotation routines are adapted from
  * <a href="http://stackoverflow.com/a/15775173">stackoverflow</a>
@@ -17,11 +23,41 @@ import com.google.zxing.LuminanceSource;
 public class SimpleLuminanceSource
         extends LuminanceSource {
 
+    /**
+     * The size of the square tiles used when rotating by 90 degrees.
+     * 16 rows of a tile easily fit in the L1 cache of any device we run on.
+     */
+    static final int TILE_SIZE = 16;
+
     /**
      * The Y data only. Padding and u/v data are stripped in the constructor.
+     * <p>
+     * When cropped, this is still the full (uncropped) data.
      */
     @NonNull
     private final byte[] data;
+    /** The width of the full {@link #data}. */
+    private final int dataWidth;
+    /** The position of the crop window inside the full {@link #data}. */
+    private final int left;
+    private final int top;
+
+    /** {@code true} if this is an inverted view of the {@link #data}. */
+    private final boolean inverted;
+
+    /** Lazily created by {@link #getMatrix()} when cropped and/or inverted. */
+    @Nullable
+    private byte[] matrix;
+
+    /** Cached by {@link #invert()}; the inverted view of an inverted view is the original. */
+    @Nullable
+    private SimpleLuminanceSource invertedView;
+
+    /**
+     * Optional; if set, all buffers for derived sources are borrowed from it.
+     */
+    @Nullable
+    private final FrameBufferPool.Lease lease;
 
     /**
      * @param yuvData     The image data. Padding (see rowStride/pixelStride) and u/v data
@@ -42,6 +78,11 @@ public class SimpleLuminanceSource
                                  final int rowStride,
                                  final int pixelStride) {
         super(width, height);
+        lease = null;
+        dataWidth = width;
+        left = 0;
+        top = 0;
+        inverted = false;
         if (rowStride == width && pixelStride == 1) {
             data = yuvData;
         } else {
@@ -59,12 +100,128 @@ public class SimpleLuminanceSource
 
     private SimpleLuminanceSource(@NonNull final byte[] data,
                                   final int width,
-                                  final int height) {
+                                  final int height,
+                                  @Nullable final FrameBufferPool.Lease lease) {
+        this(data, width, 0, 0, width, height, false, lease);
+
+        // The buffer can be larger; see FrameBufferPool
+        if (data.length < (width * height)) {
+            throw new IllegalArgumentException("data contains padding and or u/v data");
+        }
+    }
+
+    private SimpleLuminanceSource(@NonNull final byte[] data,
+                                  final int dataWidth,
+                                  final int left,
+                                  final int top,
+                                  final int width,
+                                  final int height,
+                                  final boolean inverted,
+                                  @Nullable final FrameBufferPool.Lease lease) {
         super(width, height);
         this.data = data;
+        this.dataWidth = dataWidth;
+        this.left = left;
+        this.top = top;
+        this.inverted = inverted;
+        this.lease = lease;
+    }
 
-        if (data.length != (width * height)) {
-            throw new IllegalArgumentException("data contains padding and or u/v data");
+    /**
+     * Create a source from the raw (Y) plane of an image, stripping any padding,
+     * mirroring and rotating the data in a single pass.
+     * <p>
+     * The result is identical to using the constructor followed by
+     * {@link #flipHorizontal(boolean)} and {@link #rotate(int)},
+     * but only a single {@code width * height} array is allocated.
+     * <p>
+     * If the full image is not always needed, consider using
+     * a {@link PlaneLuminanceSource} directly.
+     *
+     * @param plane       The image data. Padding (see rowStride/pixelStride) and u/v data
+     *                    is allowed but will be stripped.
+     *                    The position of the buffer is not preserved.
+     * @param width       Width of the image
+     * @param height      Height of the image
+     * @param rowStride   The distance between the start of two consecutive rows
+     *                    of pixels in the image.
+     * @param pixelStride The distance between two consecutive pixel values in a row of pixels.
+     * @param mirror      {@code true} to flip the data around the vertical axis
+     * @param degrees     to rotate clockwise; accepts {@code 90, 180, 270}.
+     *                    Any other angle is treated as {@code 0}. No error is thrown.
+     * @param lease       (optional) to borrow the buffers from. The returned source,
+     *                    and any source derived from it, is only valid until the lease
+     *                    is closed. If {@code null}, new buffers are allocated.
+     *
+     * @return the new source
+     */
+    @NonNull
+    public static SimpleLuminanceSource transform(@NonNull final ByteBuffer plane,
+                                                  final int width,
+                                                  final int height,
+                                                  final int rowStride,
+                                                  final int pixelStride,
+                                                  final boolean mirror,
+                                                  final int degrees,
+                                                  @Nullable final FrameBufferPool.Lease lease) {
+        final PlaneLuminanceSource source = new PlaneLuminanceSource(
+                plane, width, height, rowStride, pixelStride, mirror, degrees, lease);
+        return new SimpleLuminanceSource(source.getMatrix(),
+                                         source.getWidth(), source.getHeight(),
+                                         lease);
+    }
+
+    /**
+     * Get a buffer from the lease if we have one, or allocate a new one.
+     *
+     * @param lease (optional) to borrow from
+     * @param size  of the buffer
+     *
+     * @return buffer
+     */
+    @NonNull
+    private static byte[] allocate(@Nullable final FrameBufferPool.Lease lease,
+                                   final int size) {
+        return lease != null ? lease.acquire(size) : new byte[size];
+    }
+
+    /**
+     * Copy a range of luminance values, inverting them on the way.
+     * <p>
+     * {@code ~v} is the same as {@code 255 - v} for an unsigned byte.
+     * The loop is deliberately kept trivial so the compiler can unroll and vectorize it.
+     *
+     * @param src     to read from
+     * @param srcPos  the first value to read
+     * @param dest    to write to; may be the same array as {@code src}
+     * @param destPos the first value to write
+     * @param length  the number of values
+     */
+    static void invert(@NonNull final byte[] src,
+                       final int srcPos,
+                       @NonNull final byte[] dest,
+                       final int destPos,
+                       final int length) {
+        for (int i = 0; i < length; i++) {
+            dest[destPos + i] = (byte) ~src[srcPos + i];
+        }
+    }
+
+    /**
+     * Convert the given angle to one of {@code 0, 90, 180, 270}.
+     *
+     * @param degrees to check
+     *
+     * @return the rotation; any unsupported angle is returned as {@code 0}
+     */
+    static int normaliseRotation(final int degrees) {
+        switch (degrees) {
+            case 90:
+            case 180:
+            case 270:
+                return degrees;
+            default:
+                return 0;
         }
     }
 
@@ -75,19 +232,101 @@ public class SimpleLuminanceSource
         if (y < 0 || y >= getHeight()) {
             throw new IllegalArgumentException("Requested row is outside the image: " + y);
         }
+        DecodeDeadline.check();
 
         final int width = getWidth();
         if (row == null || row.length < width) {
             row = new byte[width];
         }
-        System.arraycopy(data, y * width, row, 0, width);
+        final int src = (y + top) * dataWidth + left;
+        if (inverted) {
+            invert(data, src, row, 0, width);
+        } else {
+            System.arraycopy(data, src, row, 0, width);
+        }
         return row;
     }
 
     @Override
     @NonNull
     public byte[] getMatrix() {
-        return data;
+        DecodeDeadline.check();
+        final int width = getWidth();
+        final int height = getHeight();
+        // Any rows below the view are ignored by the caller
+        final boolean isFullFrame = left == 0 && top == 0 && width == dataWidth;
+        if (isFullFrame && !inverted) {
+            return data;
+        }
+
+        if (matrix == null) {
+            final byte[] dest = allocate(lease, width * height);
+            if (isFullFrame) {
+                invert(data, 0, dest, 0, width * height);
+            } else {
+                int src = top * dataWidth + left;
+                for (int y = 0; y < height; y++) {
+                    if (inverted) {
+                        invert(data, src, dest, y * width, width);
+                    } else {
+                        System.arraycopy(data, src, dest, y * width, width);
+                    }
+                    src += dataWidth;
+                }
+            }
+            matrix = dest;
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    /**
+     * Crop the image. This does not copy any data.
+     *
+     * @param left   The left coordinate, which must be in [0,getWidth())
+     * @param top    The top coordinate, which must be in [0,getHeight())
+     * @param width  The width of the rectangle to crop.
+     * @param height The height of the rectangle to crop.
+     *
+     * @return the cropped view
+     */
+    @Override
+    @NonNull
+    public SimpleLuminanceSource crop(final int left,
+                                      final int top,
+                                      final int width,
+                                      final int height) {
+        if (left < 0 || top < 0
+            || left + width > getWidth() || top + height > getHeight()) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        return new SimpleLuminanceSource(data, dataWidth, this.left + left, this.top + top,
+                                         width, height, inverted, lease);
+    }
+
+    /**
+     * Get an inverted view of this source. This does not copy any data.
+     * <p>
+     * Rows are inverted on the fly by {@link #getRow(int, byte[])}, and the matrix
+     * is inverted only once, when first requested.
+     * The view is cached, so repeated calls return the same instance,
+     * and inverting the view returns this source.
+     *
+     * @return the inverted view
+     */
+    @Override
+    @NonNull
+    public SimpleLuminanceSource invert() {
+        if (invertedView == null) {
+            invertedView = new SimpleLuminanceSource(data, dataWidth, left, top,
+                                                     getWidth(), getHeight(), !inverted, lease);
+            invertedView.invertedView = this;
+        }
+        return invertedView;
     }
 
     /**
@@ -100,26 +339,27 @@ public class SimpleLuminanceSource
     @NonNull
     public SimpleLuminanceSource flipHorizontal(final boolean flip) {
         if (flip) {
+            final byte[] src = getMatrix();
             final int width = getWidth();
             final int height = getHeight();
 
             final int len = width * height;
-            final byte[] yData = new byte[len];
+            final byte[] yData = allocate(lease, len);
 
             for (int y = 0, rowStart = 0;
                  y < height;
                  y++, rowStart += width) {
 
-                final int middle = rowStart + width / 2;
+                // Use '<=' so the middle column of an odd width is copied as well
                 for (int x1 = rowStart, x2 = rowStart + width - 1;
-                     x1 < middle;
+                     x1 <= x2;
                      x1++, x2--) {
 
-                    yData[x1] = data[x2];
-                    yData[x2] = data[x1];
+                    yData[x1] = src[x2];
+                    yData[x2] = src[x1];
                 }
             }
-            return new SimpleLuminanceSource(yData, width, height);
+            return new SimpleLuminanceSource(yData, width, height, lease);
 
         } else {
             return this;
@@ -136,18 +376,19 @@ public class SimpleLuminanceSource
     @NonNull
     public SimpleLuminanceSource flipVertical(final boolean flip) {
         if (flip) {
+            final byte[] src = getMatrix();
             final int width = getWidth();
             final int height = getHeight();
 
             final int len = width * height;
-            final byte[] yData = new byte[len];
+            final byte[] yData = allocate(lease, len);
 
             int dst = len - 1;
-            for (int src = 0; src < len; src++) {
-                yData[dst] = data[src];
+            for (int i = 0; i < len; i++) {
+                yData[dst] = src[i];
                 dst--;
             }
-            return new SimpleLuminanceSource(yData, width, height);
+            return new SimpleLuminanceSource(yData, width, height, lease);
 
         } else {
             return this;
@@ -186,25 +427,63 @@ public class SimpleLuminanceSource
         final int width = getWidth();
         final int height = getHeight();
 
-        final int len = width * height;
-        final byte[] yData = new byte[len];
+        final byte[] yData = allocate(lease, width * height);
+        transpose(getMatrix(), width, height, yData, true);
+        //noinspection SuspiciousNameCombination
+        return new SimpleLuminanceSource(yData, height, width, lease);
+    }
 
-        int dst = 0;
-        for (int x = 0; x < width; x++) {
-            for (int y = height - 1; y >= 0; y--) {
-                yData[dst] = data[y * width + x];
-                dst++;
+    /**
+     * Rotate an image by 90 degrees, i.e. a transpose plus a flip.
+     * <p>
+     * Walking a whole column of the source for each row of the destination reads
+     * a single byte per cache line, and the line is long gone by the time the next
+     * column needs it. Instead, we work in small square tiles so the source rows of
+     * a tile remain in the cache while its columns are written out.
+     *
+     * @param src       the image data
+     * @param width     of the image
+     * @param height    of the image
+     * @param dest      to write to; must be at least {@code width * height}
+     * @param clockwise {@code true} to rotate CW, {@code false} for CCW
+     */
+    static void transpose(@NonNull final byte[] src,
+                          final int width,
+                          final int height,
+                          @NonNull final byte[] dest,
+                          final boolean clockwise) {
+        for (int y0 = 0; y0 < height; y0 += TILE_SIZE) {
+            final int y1 = Math.min(y0 + TILE_SIZE, height);
+            for (int x0 = 0; x0 < width; x0 += TILE_SIZE) {
+                final int x1 = Math.min(x0 + TILE_SIZE, width);
+                for (int x = x0; x < x1; x++) {
+                    // Source column x becomes destination row x (CW) or width-1-x (CCW)
+                    int srcPos = y0 * width + x;
+                    if (clockwise) {
+                        int dst = x * height + height - 1 - y0;
+                        for (int y = y0; y < y1; y++) {
+                            dest[dst--] = src[srcPos];
+                            srcPos += width;
+                        }
+                    } else {
+                        int dst = (width - 1 - x) * height + y0;
+                        for (int y = y0; y < y1; y++) {
+                            dest[dst++] = src[srcPos];
+                            srcPos += width;
+                        }
+                    }
+                }
             }
         }
-        //noinspection SuspiciousNameCombination
-        return new SimpleLuminanceSource(yData, height, width);
+    }
+
+    @Override
+    public boolean isRotateSupported() {
+        return true;
     }
 
     /**
      * Rotate an image by 90 degrees CCW.
-     * <p>
-     * Note: this one implements the interface, but for now we're missing
-     * {@link #rotateCounterClockwise45()} so we cannot add {@link #isRotateSupported()} yet.
      *
      * @return the rotated data
      */
@@ -214,18 +493,82 @@ public class SimpleLuminanceSource
         final int width = getWidth();
         final int height = getHeight();
 
-        final int len = width * height;
-        final byte[] yData = new byte[len];
+        final byte[] yData = allocate(lease, width * height);
+        transpose(getMatrix(), width, height, yData, false);
+        //noinspection SuspiciousNameCombination
+        return new SimpleLuminanceSource(yData, height, width, lease);
+    }
 
-        int dst = len - 1;
-        for (int x = 0; x < width; x++) {
-            for (int y = height - 1; y >= 0; y--) {
-                yData[dst] = data[y * width + x];
-                dst--;
+    /**
+     * Rotate an image by 45 degrees CCW.
+     * <p>
+     * The result is a square with the same centre as the original, and sides
+     * equal to the largest dimension of the original.
+     * Corners not covered by the original are filled with white.
+     *
+     * @return the rotated data
+     */
+    @Override
+    @NonNull
+    public SimpleLuminanceSource rotateCounterClockwise45() {
+        return rotateCounterClockwise45(getMatrix(), getWidth(), getHeight(), lease);
+    }
+
+    /**
+     * Rotate an image by 45 degrees CCW.
+     * <p>
+     * Uses nearest-neighbour sampling. Each output row is a straight line
+     * through the source, so we walk along it using fixed-point increments.
+     *
+     * @param src    the full image data
+     * @param width  of the image
+     * @param height of the image
+     * @param lease  (optional) to borrow the buffer from
+     *
+     * @return the rotated data
+     *
+     * @see #rotateCounterClockwise45()
+     */
+    @NonNull
+    static SimpleLuminanceSource rotateCounterClockwise45(
+            @NonNull final byte[] src,
+            final int width,
+            final int height,
+            @Nullable final FrameBufferPool.Lease lease) {
+        final int dim = Math.max(width, height);
+        final byte[] yData = allocate(lease, dim * dim);
+
+        // cos(45) == sin(45) in 16.16 fixed point
+        final int sin45 = 46341;
+        final int half = 1 << 15;
+
+        // The centre of the source, and the offset from the output centre
+        // to the output pixel (0,0), all in fixed point.
+        final int centreX = (width << 16) / 2;
+        final int centreY = (height << 16) / 2;
+        final int offset = -(dim << 16) / 2 + half;
+
+        int dst = 0;
+        for (int y = 0; y < dim; y++) {
+            final int v = offset + (y << 16);
+            // The source position of output pixel (0,y); i.e. rotate (u,v) clockwise.
+            // As each step is a 16.16 value multiplied by another 16.16 value, we need
+            // a long and shift back.
+            long sx = centreX + (((long) offset - v) * sin45 >> 16);
+            long sy = centreY + (((long) offset + v) * sin45 >> 16);
+            for (int x = 0; x < dim; x++) {
+                final int ix = (int) (sx >> 16);
+                final int iy = (int) (sy >> 16);
+                if (sx >= 0 && sy >= 0 && ix < width && iy < height) {
+                    yData[dst] = src[iy * width + ix];
+                } else {
+                    yData[dst] = (byte) 0xFF;
+                }
+                dst++;
+                sx += sin45;
+                sy += sin45;
             }
         }
-        //noinspection SuspiciousNameCombination
-        return new SimpleLuminanceSource(yData, height, width);
+        return new SimpleLuminanceSource(yData, dim, dim, lease);
     }
 }
-
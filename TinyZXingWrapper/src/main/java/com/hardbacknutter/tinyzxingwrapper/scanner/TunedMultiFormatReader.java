@@ -0,0 +1,263 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.oned.MultiFormatOneDReader;
+import com.google.zxing.oned.MultiFormatUPCEANReader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A replacement for {@link com.google.zxing.MultiFormatReader} which tries its readers
+ * in order of the number of barcodes found per format, as recorded in a
+ * {@link FormatStatistics}.
+ * <p>
+ * All 1D formats share a single {@link MultiFormatOneDReader}, as it reads each row
+ * only once for all of them. Each 2D format has its own reader.
+ * <p>
+ * Optionally, once the same format was found a number of times in a row, only the reader
+ * for that format is tried; for any of the UPC/EAN formats, that is a reader for all of
+ * the requested UPC/EAN formats, as they can't be told apart by a single format reader.
+ * Every {@link #PROBE_INTERVAL}th decode still tries all of them, so a change of format
+ * is picked up.
+ * <p>
+ * Not thread-safe; owned by a single {@link DefaultDecoder}.
+ * The statistics can be shared.
+ */
+final class TunedMultiFormatReader
+        implements Reader {
+
+    /** When narrowed, try all readers on one in this many decodes. */
+    private static final int PROBE_INTERVAL = 16;
+
+    /** The 2D formats, in the order the {@link com.google.zxing.MultiFormatReader} uses. */
+    private static final List<BarcodeFormat> MATRIX = List.of(
+            BarcodeFormat.QR_CODE,
+            BarcodeFormat.DATA_MATRIX,
+            BarcodeFormat.AZTEC,
+            BarcodeFormat.PDF_417,
+            BarcodeFormat.MAXICODE);
+
+    /** The formats which are all decoded by a single {@link MultiFormatUPCEANReader}. */
+    private static final Set<BarcodeFormat> UPC_EAN = EnumSet.of(
+            BarcodeFormat.EAN_13,
+            BarcodeFormat.EAN_8,
+            BarcodeFormat.UPC_A,
+            BarcodeFormat.UPC_E);
+
+    @NonNull
+    private final Map<DecodeHintType, Object> hints;
+    @NonNull
+    private final FormatStatistics statistics;
+    /** Narrow to a single format after this many hits in a row; {@code 0} to never narrow. */
+    private final int narrowAfterHits;
+
+    @NonNull
+    private final List<Unit> units = new ArrayList<>();
+    @NonNull
+    private final Comparator<Unit> byHits;
+    /** Readers for narrowing; created when first needed. */
+    @NonNull
+    private final Map<BarcodeFormat, Reader> singleReaders = new EnumMap<>(BarcodeFormat.class);
+    @NonNull
+    private final Set<BarcodeFormat> formats;
+
+    private int decodeCount;
+    private int sortedModCount = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param hints           to use; the {@link DecodeHintType#POSSIBLE_FORMATS} decide
+     *                        which readers are created
+     * @param statistics      to read and record the hits
+     * @param narrowAfterHits narrow to a single format after this many hits in a row;
+     *                        {@code 0} to never narrow
+     */
+    TunedMultiFormatReader(@NonNull final Map<DecodeHintType, Object> hints,
+                           @NonNull final FormatStatistics statistics,
+                           final int narrowAfterHits) {
+        this.hints = hints;
+        this.statistics = statistics;
+        this.narrowAfterHits = narrowAfterHits;
+
+        final Object value = hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        formats = EnumSet.noneOf(BarcodeFormat.class);
+        if (value instanceof Collection && !((Collection<?>) value).isEmpty()) {
+            for (final Object format : (Collection<?>) value) {
+                if (format instanceof BarcodeFormat) {
+                    formats.add((BarcodeFormat) format);
+                }
+            }
+        } else {
+            formats.addAll(EnumSet.allOf(BarcodeFormat.class));
+        }
+
+        // Until we have statistics, use the same order as the MultiFormatReader
+        final Set<BarcodeFormat> linear = EnumSet.noneOf(BarcodeFormat.class);
+        for (final BarcodeFormat format : formats) {
+            if (BarcodeFamily.isLinear(format)) {
+                linear.add(format);
+            }
+        }
+        if (!linear.isEmpty()) {
+            units.add(new Unit(new MultiFormatOneDReader(hints), linear));
+        }
+        for (final BarcodeFormat format : MATRIX) {
+            if (formats.contains(format)) {
+                final Reader reader = DefaultDecoderFactory.createReader(format, hints);
+                if (reader != null) {
+                    units.add(new Unit(reader, EnumSet.of(format)));
+                }
+            }
+        }
+
+        byHits = Comparator.comparingInt(unit -> -statistics.getHits(unit.formats));
+    }
+
+    @Override
+    @NonNull
+    public Result decode(@NonNull final BinaryBitmap image)
+            throws NotFoundException {
+        return decode(image, hints);
+    }
+
+    @Override
+    @NonNull
+    public Result decode(@NonNull final BinaryBitmap image,
+                         @Nullable final Map<DecodeHintType, ?> decodeHints)
+            throws NotFoundException {
+        decodeCount++;
+
+        if (narrowAfterHits > 0 && decodeCount % PROBE_INTERVAL != 0) {
+            final BarcodeFormat format = statistics.getStreakFormat(narrowAfterHits);
+            if (format != null && formats.contains(format)) {
+                final Reader reader = getSingleReader(format);
+                if (reader != null) {
+                    return decode(reader, image, decodeHints);
+                }
+            }
+        }
+
+        sortUnits();
+        for (final Unit unit : units) {
+            try {
+                return decode(unit.reader, image, decodeHints);
+            } catch (@NonNull final ReaderException ignore) {
+                // try the next one
+            }
+        }
+        throw NotFoundException.getNotFoundInstance();
+    }
+
+    private void sortUnits() {
+        final int modCount = statistics.getModCount();
+        if (modCount != sortedModCount) {
+            // Stable sort; equal hits keep their previous order
+            units.sort(byHits);
+            sortedModCount = modCount;
+        }
+    }
+
+    /**
+     * Get the order in which the readers will be tried when all of them are.
+     *
+     * @return the formats of each reader, in order
+     */
+    @VisibleForTesting
+    @NonNull
+    List<Set<BarcodeFormat>> getReaderOrder() {
+        sortUnits();
+        final List<Set<BarcodeFormat>> order = new ArrayList<>(units.size());
+        for (final Unit unit : units) {
+            order.add(unit.formats);
+        }
+        return order;
+    }
+
+    @NonNull
+    private Result decode(@NonNull final Reader reader,
+                          @NonNull final BinaryBitmap image,
+                          @Nullable final Map<DecodeHintType, ?> decodeHints)
+            throws NotFoundException {
+        final Result result;
+        try {
+            result = reader.decode(image, decodeHints);
+        } catch (@NonNull final NotFoundException e) {
+            throw e;
+        } catch (@NonNull final ReaderException e) {
+            // i.e. ChecksumException/FormatException; treat as nothing found
+            throw NotFoundException.getNotFoundInstance();
+        }
+        statistics.record(result.getBarcodeFormat());
+        return result;
+    }
+
+    @Nullable
+    private Reader getSingleReader(@NonNull final BarcodeFormat format) {
+        Reader reader = singleReaders.get(format);
+        if (reader == null && !singleReaders.containsKey(format)) {
+            if (UPC_EAN.contains(format)) {
+                // An EAN-13 reader would return a UPC-A barcode as an EAN-13 with a
+                // leading '0'. Use one reader for all requested UPC/EAN formats,
+                // which reports the correct format.
+                reader = new MultiFormatUPCEANReader(hints);
+                for (final BarcodeFormat upcEan : UPC_EAN) {
+                    if (formats.contains(upcEan)) {
+                        singleReaders.put(upcEan, reader);
+                    }
+                }
+            } else {
+                reader = DefaultDecoderFactory.createReader(format, hints);
+                // Also store a null, so we don't try again
+                singleReaders.put(format, reader);
+            }
+        }
+        return reader;
+    }
+
+    @Override
+    public void reset() {
+        for (final Unit unit : units) {
+            unit.reader.reset();
+        }
+        for (final Reader reader : singleReaders.values()) {
+            if (reader != null) {
+                reader.reset();
+            }
+        }
+    }
+
+    /**
+     * A reader and the formats it decodes.
+     */
+    private static final class Unit {
+
+        @NonNull
+        final Reader reader;
+        @NonNull
+        final Set<BarcodeFormat> formats;
+
+        Unit(@NonNull final Reader reader,
+             @NonNull final Set<BarcodeFormat> formats) {
+            this.reader = reader;
+            this.formats = formats;
+        }
+    }
+}
@@ -29,9 +29,6 @@ import androidx.annotation.Nullable;
 
 import com.google.zxing.ResultPoint;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import com.hardbacknutter.tinyzxingwrapper.R;
 
 /**
@@ -59,8 +56,12 @@ public class TzwViewfinderView
     @NonNull
     private final Paint paint;
 
-    private final List<ResultPoint> resultPoints = new ArrayList<>(MAX_POINTS);
-    private final List<ResultPoint> previousResultPoints = new ArrayList<>(MAX_POINTS);
+    /** The points to draw next, as x,y pairs. Guarded by itself. */
+    private final float[] resultPoints = new float[MAX_POINTS * 2];
+    private int resultPointCount;
+    /** The points drawn last time, as x,y pairs. Main thread only. */
+    private final float[] previousResultPoints = new float[MAX_POINTS * 2];
+    private int previousResultPointCount;
 
     /**
      * Current index into {@link #LASER_COLOR_ALPHA}.
@@ -220,16 +221,20 @@ public class TzwViewfinderView
                 scaleY = 1;
             }
 
-            if (!previousResultPoints.isEmpty()) {
-                drawResultPoints(canvas, previousResultPoints, scaleX, scaleY,
-                                 PREVIOUS_POINT_SIZE, PREVIOUS_POINT_OPACITY);
+            if (previousResultPointCount > 0) {
+                drawResultPoints(canvas, previousResultPoints, previousResultPointCount,
+                                 scaleX, scaleY, PREVIOUS_POINT_SIZE, PREVIOUS_POINT_OPACITY);
+                previousResultPointCount = 0;
             }
 
             synchronized (resultPoints) {
-                if (!resultPoints.isEmpty()) {
-                    previousResultPoints.addAll(resultPoints);
-                    drawResultPoints(canvas, resultPoints, scaleX, scaleY,
-                                     POINT_SIZE, POINT_OPACITY);
+                if (resultPointCount > 0) {
+                    System.arraycopy(resultPoints, 0, previousResultPoints, 0,
+                                     resultPointCount * 2);
+                    previousResultPointCount = resultPointCount;
+                    drawResultPoints(canvas, resultPoints, resultPointCount,
+                                     scaleX, scaleY, POINT_SIZE, POINT_OPACITY);
+                    resultPointCount = 0;
                 }
             }
         }
@@ -241,18 +246,19 @@ public class TzwViewfinderView
     }
 
     private void drawResultPoints(@NonNull final Canvas canvas,
-                                  @NonNull final List<ResultPoint> points,
+                                  @NonNull final float[] points,
+                                  final int count,
                                   final float scaleX,
                                   final float scaleY,
                                   final float radius,
                                   final int alpha) {
         paint.setAlpha(alpha);
         paint.setColor(resultPointColor);
-        points.forEach(point -> canvas.drawCircle(
-                (int) point.getX() * scaleX,
-                (int) point.getY() * scaleY,
-                radius, paint));
-        points.clear();
+        for (int i = 0; i < count; i++) {
+            canvas.drawCircle((int) points[i * 2] * scaleX,
+                              (int) points[i * 2 + 1] * scaleY,
+                              radius, paint);
+        }
     }
 
     @Override
@@ -265,10 +271,25 @@ public class TzwViewfinderView
     @Override
     public void foundPossibleResultPoint(@NonNull final ResultPoint point) {
         synchronized (resultPoints) {
-            if (resultPoints.size() < MAX_POINTS) {
-                resultPoints.add(point);
+            if (resultPointCount < MAX_POINTS) {
+                resultPoints[resultPointCount * 2] = point.getX();
+                resultPoints[resultPointCount * 2 + 1] = point.getY();
+                resultPointCount++;
             }
         }
     }
 
+    @Override
+    public void onResultPoints(final int width,
+                               final int height,
+                               @NonNull final float[] points,
+                               final int count) {
+        setImageSize(width, height);
+        synchronized (resultPoints) {
+            final int added = Math.min(count, MAX_POINTS - resultPointCount);
+            System.arraycopy(points, 0, resultPoints, resultPointCount * 2, added * 2);
+            resultPointCount += added;
+        }
+    }
+
 }
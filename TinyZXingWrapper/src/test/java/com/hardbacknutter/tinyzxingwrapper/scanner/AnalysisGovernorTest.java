@@ -0,0 +1,78 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnalysisGovernorTest {
+
+    private static final long FRAME_INTERVAL = TimeUnit.MILLISECONDS.toNanos(33);
+
+    private long now = TimeUnit.SECONDS.toNanos(100);
+
+    /**
+     * Feed frames to the governor.
+     *
+     * @param governor    to test
+     * @param frames      the number of incoming frames
+     * @param decodeNanos the time each analysed frame takes
+     * @param promising   whether the analysed frames are promising
+     *
+     * @return the number of frames analysed
+     */
+    private int run(final AnalysisGovernor governor,
+                    final int frames,
+                    final long decodeNanos,
+                    final boolean promising) {
+        int analysed = 0;
+        for (int i = 0; i < frames; i++) {
+            now += FRAME_INTERVAL;
+            if (governor.shouldAnalyze(now)) {
+                governor.onAnalyzed(decodeNanos, promising, now);
+                analysed++;
+            }
+        }
+        return analysed;
+    }
+
+    @Test
+    public void analysesEveryFrameWithinBudget() {
+        final AnalysisGovernor governor = new AnalysisGovernor(0.5f);
+        assertEquals(100, run(governor, 100, FRAME_INTERVAL / 4, false));
+    }
+
+    @Test
+    public void slowsDownToTheBudget() {
+        final AnalysisGovernor governor = new AnalysisGovernor(0.5f);
+        // Decoding takes 2 frame intervals; at a 50% budget, that's 1 in 4 frames.
+        run(governor, 100, FRAME_INTERVAL * 2, false);
+        assertEquals(10, run(governor, 40, FRAME_INTERVAL * 2, false));
+    }
+
+    @Test
+    public void neverSkipsTooManyFrames() {
+        final AnalysisGovernor governor = new AnalysisGovernor(0.1f);
+        run(governor, 200, FRAME_INTERVAL * 10, false);
+        assertEquals(5, run(governor, 40, FRAME_INTERVAL * 10, false));
+    }
+
+    @Test
+    public void promisingFrameRestoresFullRate() {
+        final AnalysisGovernor governor = new AnalysisGovernor(0.5f);
+        run(governor, 100, FRAME_INTERVAL * 2, false);
+
+        // Skip to the next analysed frame, and make it a promising one
+        do {
+            now += FRAME_INTERVAL;
+        } while (!governor.shouldAnalyze(now));
+        governor.onAnalyzed(FRAME_INTERVAL * 2, true, now);
+
+        // Slow, but not promising frames are still all analysed for a while (1 second)
+        assertEquals(20, run(governor, 20, FRAME_INTERVAL * 2, false));
+        // ... after which the governor slows down again
+        run(governor, 100, FRAME_INTERVAL * 2, false);
+        assertEquals(10, run(governor, 40, FRAME_INTERVAL * 2, false));
+    }
+}
@@ -0,0 +1,105 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DecodeSchedulerTest {
+
+    private static final int STREAK = 3;
+
+    private static final Set<DecodeEffort> CHEAP = EnumSet.noneOf(DecodeEffort.class);
+    private static final Set<DecodeEffort> INVERTED = EnumSet.of(DecodeEffort.Inverted);
+    private static final Set<DecodeEffort> TRY_HARDER = EnumSet.of(DecodeEffort.TryHarder);
+
+    private static void failFrames(final DecodeScheduler scheduler,
+                                   final boolean promising,
+                                   final int frames) {
+        for (int i = 0; i < frames; i++) {
+            scheduler.next();
+            scheduler.onDecoded(false, promising);
+        }
+    }
+
+    @Test
+    public void staysCheapWithoutPromise() {
+        final DecodeScheduler scheduler = new DecodeScheduler(
+                STREAK, EnumSet.allOf(DecodeEffort.class));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(CHEAP, scheduler.next());
+            scheduler.onDecoded(false, false);
+        }
+    }
+
+    @Test
+    public void escalatesAfterStreak() {
+        final DecodeScheduler scheduler = new DecodeScheduler(
+                STREAK, EnumSet.allOf(DecodeEffort.class));
+        failFrames(scheduler, true, STREAK - 1);
+        assertEquals(CHEAP, scheduler.next());
+        scheduler.onDecoded(false, true);
+
+        // Interleaved: try-harder every 4th frame, inverted on the odd frames
+        assertEquals(TRY_HARDER, scheduler.next());
+        assertEquals(INVERTED, scheduler.next());
+        assertEquals(CHEAP, scheduler.next());
+        assertEquals(INVERTED, scheduler.next());
+        assertEquals(TRY_HARDER, scheduler.next());
+        assertEquals(INVERTED, scheduler.next());
+    }
+
+    @Test
+    public void streakMustBeUnbroken() {
+        final DecodeScheduler scheduler = new DecodeScheduler(
+                STREAK, EnumSet.allOf(DecodeEffort.class));
+        failFrames(scheduler, true, STREAK - 1);
+        failFrames(scheduler, false, 1);
+        failFrames(scheduler, true, STREAK - 1);
+        assertEquals(CHEAP, scheduler.next());
+    }
+
+    @Test
+    public void successGoesBackToCheap() {
+        final DecodeScheduler scheduler = new DecodeScheduler(
+                STREAK, EnumSet.allOf(DecodeEffort.class));
+        failFrames(scheduler, true, STREAK);
+        scheduler.onDecoded(true, true);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(CHEAP, scheduler.next());
+        }
+    }
+
+    @Test
+    public void losingPromiseGoesBackToCheap() {
+        final DecodeScheduler scheduler = new DecodeScheduler(
+                STREAK, EnumSet.allOf(DecodeEffort.class));
+        failFrames(scheduler, true, STREAK);
+        // A few frames without points are not enough...
+        failFrames(scheduler, false, STREAK - 1);
+        boolean expensive = false;
+        for (int i = 0; i < 4; i++) {
+            expensive |= !scheduler.next().isEmpty();
+        }
+        assertTrue(expensive);
+
+        // ... a full streak is
+        failFrames(scheduler, false, STREAK);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(CHEAP, scheduler.next());
+        }
+    }
+
+    @Test
+    public void onlyAllowedEfforts() {
+        final DecodeScheduler scheduler = new DecodeScheduler(
+                STREAK, EnumSet.of(DecodeEffort.Inverted));
+        failFrames(scheduler, true, STREAK);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i % 2 == 1 ? INVERTED : CHEAP, scheduler.next());
+        }
+    }
+}
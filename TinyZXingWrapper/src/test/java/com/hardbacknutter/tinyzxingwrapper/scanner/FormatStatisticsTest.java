@@ -0,0 +1,91 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import com.google.zxing.BarcodeFormat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FormatStatisticsTest {
+
+    @Test
+    public void countsHits() {
+        final FormatStatistics statistics = new FormatStatistics();
+        statistics.record(BarcodeFormat.EAN_13);
+        statistics.record(BarcodeFormat.QR_CODE);
+        statistics.record(BarcodeFormat.EAN_13);
+
+        assertEquals(2, statistics.getHits(List.of(BarcodeFormat.EAN_13)));
+        assertEquals(3, statistics.getHits(List.of(BarcodeFormat.EAN_13,
+                                                   BarcodeFormat.QR_CODE,
+                                                   BarcodeFormat.CODE_128)));
+        assertEquals(0, statistics.getHits(List.of(BarcodeFormat.CODE_128)));
+    }
+
+    @Test
+    public void streak() {
+        final FormatStatistics statistics = new FormatStatistics();
+        assertNull(statistics.getStreakFormat(1));
+
+        statistics.record(BarcodeFormat.EAN_13);
+        statistics.record(BarcodeFormat.EAN_13);
+        assertEquals(BarcodeFormat.EAN_13, statistics.getStreakFormat(2));
+        assertNull(statistics.getStreakFormat(3));
+
+        // Another format breaks the streak
+        statistics.record(BarcodeFormat.QR_CODE);
+        assertEquals(BarcodeFormat.QR_CODE, statistics.getStreakFormat(1));
+        assertNull(statistics.getStreakFormat(2));
+    }
+
+    @Test
+    public void persistHitCounts() {
+        final FormatStatistics statistics = new FormatStatistics();
+        statistics.record(BarcodeFormat.EAN_13);
+        statistics.record(BarcodeFormat.QR_CODE);
+        final Map<BarcodeFormat, Integer> counts = statistics.getHitCounts();
+        assertEquals(Map.of(BarcodeFormat.EAN_13, 1, BarcodeFormat.QR_CODE, 1), counts);
+
+        // A copy; not changed by later hits
+        statistics.record(BarcodeFormat.EAN_13);
+        assertEquals(Integer.valueOf(1), counts.get(BarcodeFormat.EAN_13));
+
+        final FormatStatistics restored = new FormatStatistics();
+        restored.record(BarcodeFormat.EAN_13);
+        restored.addHitCounts(counts);
+        assertEquals(2, restored.getHits(List.of(BarcodeFormat.EAN_13)));
+        assertEquals(1, restored.getHits(List.of(BarcodeFormat.QR_CODE)));
+    }
+
+    @Test
+    public void clear() {
+        final FormatStatistics statistics = new FormatStatistics();
+        statistics.record(BarcodeFormat.EAN_13);
+        statistics.clear();
+        assertEquals(0, statistics.getHits(List.of(BarcodeFormat.EAN_13)));
+        assertNull(statistics.getStreakFormat(1));
+        assertTrue(statistics.getHitCounts().isEmpty());
+    }
+
+    @Test
+    public void everyChangeIsCounted() {
+        final FormatStatistics statistics = new FormatStatistics();
+        int modCount = statistics.getModCount();
+        statistics.record(BarcodeFormat.EAN_13);
+        assertNotEquals(modCount, statistics.getModCount());
+
+        modCount = statistics.getModCount();
+        statistics.addHitCounts(Map.of(BarcodeFormat.QR_CODE, 3));
+        assertNotEquals(modCount, statistics.getModCount());
+
+        modCount = statistics.getModCount();
+        statistics.clear();
+        assertNotEquals(modCount, statistics.getModCount());
+    }
+}
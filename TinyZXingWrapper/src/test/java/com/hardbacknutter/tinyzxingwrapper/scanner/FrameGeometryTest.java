@@ -0,0 +1,99 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import com.google.zxing.ResultPoint;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FrameGeometryTest {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void rotatePoint() {
+        final ResultPoint point = new ResultPoint(10, 5);
+
+        assertSame(point, FrameGeometry.rotate(point, WIDTH, HEIGHT, 0));
+        assertPoint(25, 10, FrameGeometry.rotate(point, WIDTH, HEIGHT, 90));
+        assertPoint(30, 25, FrameGeometry.rotate(point, WIDTH, HEIGHT, 180));
+        assertPoint(5, 30, FrameGeometry.rotate(point, WIDTH, HEIGHT, 270));
+        // Any other angle is treated as 0
+        assertSame(point, FrameGeometry.rotate(point, WIDTH, HEIGHT, 45));
+        assertSame(point, FrameGeometry.rotate(point, WIDTH, HEIGHT, -90));
+    }
+
+    @Test
+    public void fourQuarterTurnsAreIdentity() {
+        ResultPoint point = new ResultPoint(12.5f, 7.25f);
+        int width = WIDTH;
+        int height = HEIGHT;
+        for (int i = 0; i < 4; i++) {
+            point = FrameGeometry.rotate(point, width, height, 90);
+            final int tmp = width;
+            //noinspection SuspiciousNameCombination
+            width = height;
+            height = tmp;
+        }
+        assertPoint(12.5f, 7.25f, point);
+    }
+
+    @Test
+    public void rotateFloatsMatchesPoints() {
+        final float[] points = {-1, -1, 10, 5, 3.5f, 28, -1, -1};
+        for (final int degrees : new int[]{0, 90, 180, 270}) {
+            final float[] mapped = points.clone();
+            FrameGeometry.rotate(mapped, 2, WIDTH, HEIGHT, degrees);
+            FrameGeometry.rotate(mapped, 4, WIDTH, HEIGHT, degrees);
+
+            for (int offset = 2; offset <= 4; offset += 2) {
+                final ResultPoint expected = FrameGeometry.rotate(
+                        new ResultPoint(points[offset], points[offset + 1]),
+                        WIDTH, HEIGHT, degrees);
+                assertEquals(expected.getX(), mapped[offset], DELTA);
+                assertEquals(expected.getY(), mapped[offset + 1], DELTA);
+            }
+            // The other points are left alone
+            assertEquals(-1, mapped[0], DELTA);
+            assertEquals(-1, mapped[7], DELTA);
+        }
+    }
+
+    /**
+     * A pixel of the sensor image must end up at the rotated point
+     * in the rotated view of the same image.
+     */
+    @Test
+    public void rotateMatchesRotatedSource() {
+        final byte[] data = TestImages.gradient(WIDTH, HEIGHT);
+        for (final int degrees : new int[]{0, 90, 180, 270}) {
+            final PlaneLuminanceSource rotated = new PlaneLuminanceSource(
+                    ByteBuffer.wrap(data), WIDTH, HEIGHT, WIDTH, 1, false, degrees, null);
+            final byte[] matrix = rotated.getMatrix();
+            for (int y = 0; y < HEIGHT; y += 7) {
+                for (int x = 0; x < WIDTH; x += 3) {
+                    // Rotate the centre of the pixel
+                    final ResultPoint p = FrameGeometry.rotate(
+                            new ResultPoint(x + 0.5f, y + 0.5f), WIDTH, HEIGHT, degrees);
+                    final int rx = (int) p.getX();
+                    final int ry = (int) p.getY();
+                    assertEquals("degrees=" + degrees + ", x=" + x + ", y=" + y,
+                                 data[y * WIDTH + x],
+                                 matrix[ry * rotated.getWidth() + rx]);
+                }
+            }
+        }
+    }
+
+    private static void assertPoint(final float x,
+                                    final float y,
+                                    final ResultPoint point) {
+        assertEquals(x, point.getX(), DELTA);
+        assertEquals(y, point.getY(), DELTA);
+    }
+}
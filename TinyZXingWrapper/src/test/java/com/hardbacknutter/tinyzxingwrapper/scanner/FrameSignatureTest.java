@@ -0,0 +1,102 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameSignatureTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    /** Padded rows, with the Y values interleaved with another plane. */
+    private static final int PIXEL_STRIDE = 2;
+    private static final int ROW_STRIDE = WIDTH * PIXEL_STRIDE + 16;
+
+    private static final float THRESHOLD = 3;
+    private static final long INTERVAL = 1000;
+
+    private FrameSignature signature;
+
+    /**
+     * Create a frame with a diagonal gradient, and the padding set to garbage.
+     *
+     * @param brightness added to each pixel
+     *
+     * @return plane
+     */
+    private static ByteBuffer frame(final int brightness) {
+        final byte[] data = new byte[ROW_STRIDE * HEIGHT];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                data[y * ROW_STRIDE + x * PIXEL_STRIDE] = (byte) ((x + y) / 2 + brightness);
+            }
+        }
+        return ByteBuffer.wrap(data);
+    }
+
+    private void compute(final int brightness) {
+        signature.compute(frame(brightness), WIDTH, HEIGHT, ROW_STRIDE, PIXEL_STRIDE);
+    }
+
+    @Before
+    public void setUp() {
+        signature = new FrameSignature();
+        compute(0);
+        signature.setReference(0);
+    }
+
+    @Test
+    public void noReference() {
+        signature.clearReference();
+        compute(0);
+        assertFalse(signature.matchesReference(THRESHOLD, INTERVAL, 1));
+    }
+
+    @Test
+    public void threshold() {
+        compute(0);
+        assertTrue(signature.matchesReference(THRESHOLD, INTERVAL, 1));
+        compute(3);
+        assertTrue(signature.matchesReference(THRESHOLD, INTERVAL, 1));
+        compute(4);
+        assertFalse(signature.matchesReference(THRESHOLD, INTERVAL, 1));
+    }
+
+    @Test
+    public void driftIsMeasuredAgainstTheReference() {
+        // Each frame differs by a single level from the previous one,
+        // but the difference with the reference adds up.
+        for (int brightness = 1; brightness <= 3; brightness++) {
+            compute(brightness);
+            assertTrue(signature.matchesReference(THRESHOLD, INTERVAL, brightness));
+        }
+        compute(4);
+        assertFalse(signature.matchesReference(THRESHOLD, INTERVAL, 4));
+    }
+
+    @Test
+    public void forcedInterval() {
+        compute(0);
+        assertTrue(signature.matchesReference(THRESHOLD, INTERVAL, INTERVAL));
+        assertFalse(signature.matchesReference(THRESHOLD, INTERVAL, INTERVAL + 1));
+
+        // A new reference restarts the interval
+        signature.setReference(INTERVAL + 1);
+        compute(0);
+        assertTrue(signature.matchesReference(THRESHOLD, INTERVAL, INTERVAL + 1 + INTERVAL));
+    }
+
+    @Test
+    public void zeroIntervalNeverForcesADecode() {
+        compute(0);
+        assertTrue(signature.matchesReference(THRESHOLD, 0, 1));
+        assertTrue(signature.matchesReference(THRESHOLD, 0, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,183 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import com.google.zxing.LuminanceSource;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class PlaneLuminanceSourceTest {
+
+    /** Wider than a tile, and not a multiple of it. */
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+    private static final int PIXEL_STRIDE = 2;
+    private static final int ROW_STRIDE = WIDTH * PIXEL_STRIDE + 6;
+
+    private static final int[] DEGREES = {0, 90, 180, 270};
+
+    private final byte[] pixels = TestImages.gradient(WIDTH, HEIGHT);
+
+    /**
+     * Create a plane like the camera does: padded rows, the pixels interleaved
+     * with another plane, and the last row not padded.
+     *
+     * @return plane
+     */
+    private ByteBuffer plane() {
+        final byte[] data = new byte[(HEIGHT - 1) * ROW_STRIDE + (WIDTH - 1) * PIXEL_STRIDE + 1];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) 0xAA;
+        }
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                data[y * ROW_STRIDE + x * PIXEL_STRIDE] = pixels[y * WIDTH + x];
+            }
+        }
+        return ByteBuffer.wrap(data);
+    }
+
+    private PlaneLuminanceSource view(final boolean mirror,
+                                      final int degrees,
+                                      final FrameBufferPool.Lease lease) {
+        return new PlaneLuminanceSource(plane(), WIDTH, HEIGHT, ROW_STRIDE, PIXEL_STRIDE,
+                                        mirror, degrees, lease);
+    }
+
+    private byte[] expected(final boolean mirror,
+                            final int degrees) {
+        return new SimpleLuminanceSource(pixels, WIDTH, HEIGHT, WIDTH, 1)
+                .flipHorizontal(mirror)
+                .rotate(degrees)
+                .getMatrix();
+    }
+
+    /** Read the image row by row, as the 1D readers do. */
+    private static byte[] rows(final LuminanceSource source) {
+        final int width = source.getWidth();
+        final byte[] data = new byte[width * source.getHeight()];
+        byte[] row = null;
+        for (int y = 0; y < source.getHeight(); y++) {
+            row = source.getRow(y, row);
+            System.arraycopy(row, 0, data, y * width, width);
+        }
+        return data;
+    }
+
+    private static byte[] matrix(final LuminanceSource source) {
+        final byte[] matrix = source.getMatrix();
+        final byte[] data = new byte[source.getWidth() * source.getHeight()];
+        System.arraycopy(matrix, 0, data, 0, data.length);
+        return data;
+    }
+
+    @Test
+    public void mirrorAndRotate() {
+        for (final boolean mirror : new boolean[]{false, true}) {
+            for (final int degrees : DEGREES) {
+                final String msg = "mirror=" + mirror + ", degrees=" + degrees;
+                final byte[] expected = expected(mirror, degrees);
+
+                final PlaneLuminanceSource source = view(mirror, degrees, null);
+                final boolean sideways = degrees == 90 || degrees == 270;
+                assertEquals(msg, sideways ? HEIGHT : WIDTH, source.getWidth());
+                assertEquals(msg, sideways ? WIDTH : HEIGHT, source.getHeight());
+                assertArrayEquals(msg, expected, rows(source));
+                assertArrayEquals(msg, expected, matrix(source));
+                // Once the matrix is there, the rows are copied from it
+                assertArrayEquals(msg, expected, rows(source));
+            }
+        }
+    }
+
+    @Test
+    public void rotateCounterClockwise() {
+        for (final int degrees : DEGREES) {
+            final LuminanceSource rotated = view(false, degrees, null).rotateCounterClockwise();
+            final byte[] expected = expected(false, (degrees + 270) % 360);
+            assertArrayEquals("degrees=" + degrees, expected, rows(rotated));
+            assertArrayEquals("degrees=" + degrees, expected, matrix(rotated));
+        }
+    }
+
+    @Test
+    public void cropAndInvert() {
+        for (final int degrees : DEGREES) {
+            final PlaneLuminanceSource source = view(true, degrees, null);
+            final LuminanceSource cropped = source.crop(2, 3, 11, 9);
+            final LuminanceSource expected = new SimpleLuminanceSource(
+                    expected(true, degrees), source.getWidth(), source.getHeight(),
+                    source.getWidth(), 1).crop(2, 3, 11, 9);
+            assertArrayEquals(matrix(expected), rows(cropped));
+            assertArrayEquals(matrix(expected.invert()), rows(cropped.invert()));
+            assertArrayEquals(matrix(expected.invert()), matrix(cropped.invert()));
+        }
+    }
+
+    @Test
+    public void sampleRows() {
+        final PlaneLuminanceSource source = view(false, 90, null);
+        final LuminanceSource sampled = source.sampleRows(4, 5, 7);
+        final byte[] all = expected(false, 90);
+        final int width = source.getWidth();
+        assertEquals(5, sampled.getHeight());
+        for (int i = 0; i < 5; i++) {
+            final byte[] row = sampled.getRow(i, null);
+            for (int x = 0; x < width; x++) {
+                assertEquals(all[(4 + i * 7) * width + x], row[x]);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> source.sampleRows(4, 6, 7));
+    }
+
+    @Test
+    public void downsampleRegion() {
+        final int factor = 2;
+        for (final boolean mirror : new boolean[]{false, true}) {
+            for (final int degrees : DEGREES) {
+                final LuminanceSource region = PlaneLuminanceSource.downsample(
+                        plane(), ROW_STRIDE, PIXEL_STRIDE, 4, 2, 20, 14,
+                        factor, mirror, degrees, null);
+
+                // The same region, averaged by hand
+                final byte[] small = new byte[10 * 7];
+                for (int y = 0; y < 7; y++) {
+                    for (int x = 0; x < 10; x++) {
+                        int sum = 0;
+                        for (int dy = 0; dy < factor; dy++) {
+                            for (int dx = 0; dx < factor; dx++) {
+                                sum += pixels[(2 + y * 2 + dy) * WIDTH + 4 + x * 2 + dx] & 0xFF;
+                            }
+                        }
+                        small[y * 10 + x] = (byte) ((sum + 2) / 4);
+                    }
+                }
+                final byte[] expected = new SimpleLuminanceSource(small, 10, 7, 10, 1)
+                        .flipHorizontal(mirror)
+                        .rotate(degrees)
+                        .getMatrix();
+                assertArrayEquals("mirror=" + mirror + ", degrees=" + degrees,
+                                  expected, matrix(region));
+            }
+        }
+    }
+
+    @Test
+    public void invalidAfterFrame() {
+        final FrameBufferPool pool = new FrameBufferPool();
+        final FrameBufferPool.Lease lease = pool.lease();
+        final PlaneLuminanceSource source = view(false, 90, lease);
+        source.getRow(0, null);
+
+        lease.close();
+        assertThrows(IllegalStateException.class, () -> source.getRow(0, null));
+        // Still invalid when the lease is reused for the next frame
+        lease.reopen();
+        assertThrows(IllegalStateException.class, source::getMatrix);
+        view(false, 90, lease).getMatrix();
+    }
+}
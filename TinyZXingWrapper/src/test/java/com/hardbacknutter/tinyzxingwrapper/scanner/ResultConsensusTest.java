@@ -0,0 +1,87 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResultConsensusTest {
+
+    private static final long WINDOW = 1000;
+
+    private static Result result(final BarcodeFormat format,
+                                 final String text) {
+        return new Result(text, null, null, format);
+    }
+
+    private static ResultConsensus consensus() {
+        return new ResultConsensus(Map.of(BarcodeFormat.EAN_13, 3,
+                                          BarcodeFormat.UPC_A, 3,
+                                          BarcodeFormat.CODE_128, 1), WINDOW);
+    }
+
+    @Test
+    public void isNeeded() {
+        assertTrue(ResultConsensus.isNeeded(Map.of(BarcodeFormat.EAN_13, 2)));
+        assertFalse(ResultConsensus.isNeeded(Map.of(BarcodeFormat.EAN_13, 1)));
+        assertFalse(ResultConsensus.isNeeded(Map.of()));
+    }
+
+    @Test
+    public void singleReadFormats() {
+        final ResultConsensus consensus = consensus();
+        // Configured for a single read, or not configured at all
+        assertTrue(consensus.accept(result(BarcodeFormat.CODE_128, "abc"), 0));
+        assertTrue(consensus.accept(result(BarcodeFormat.QR_CODE, "abc"), 0));
+    }
+
+    @Test
+    public void needsAgreeingReads() {
+        final ResultConsensus consensus = consensus();
+        final Result read = result(BarcodeFormat.EAN_13, "5901234123457");
+        assertFalse(consensus.accept(read, 0));
+        assertFalse(consensus.accept(read, 10));
+        assertTrue(consensus.accept(read, 20));
+
+        // The agreeing reads were used up
+        assertFalse(consensus.accept(read, 30));
+    }
+
+    @Test
+    public void misreadsDoNotCount() {
+        final ResultConsensus consensus = consensus();
+        final Result read = result(BarcodeFormat.EAN_13, "5901234123457");
+        assertFalse(consensus.accept(read, 0));
+        assertFalse(consensus.accept(result(BarcodeFormat.EAN_13, "5901234123464"), 10));
+        // Same text, other format
+        assertFalse(consensus.accept(result(BarcodeFormat.UPC_A, "5901234123457"), 20));
+        assertFalse(consensus.accept(read, 30));
+        assertTrue(consensus.accept(read, 40));
+    }
+
+    @Test
+    public void readsExpire() {
+        final ResultConsensus consensus = consensus();
+        final Result read = result(BarcodeFormat.EAN_13, "5901234123457");
+        assertFalse(consensus.accept(read, 0));
+        assertFalse(consensus.accept(read, 500));
+        // The first read is too old now
+        assertFalse(consensus.accept(read, WINDOW + 1));
+        assertTrue(consensus.accept(read, WINDOW + 2));
+    }
+
+    @Test
+    public void clear() {
+        final ResultConsensus consensus = consensus();
+        final Result read = result(BarcodeFormat.EAN_13, "5901234123457");
+        assertFalse(consensus.accept(read, 0));
+        assertFalse(consensus.accept(read, 10));
+        consensus.clear();
+        assertFalse(consensus.accept(read, 20));
+    }
+}
@@ -0,0 +1,46 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ReusableHybridBinarizerTest {
+
+    @Test
+    public void matchesHybridBinarizer()
+            throws NotFoundException {
+        final LuminanceSource source = TestImages.render(BarcodeFormat.QR_CODE, "hello",
+                                                         203, 157);
+        assertEquals(new HybridBinarizer(source).getBlackMatrix(),
+                     new ReusableHybridBinarizer(source, null).getBlackMatrix());
+    }
+
+    @Test
+    public void keepsTwoSizes()
+            throws NotFoundException {
+        final ReusableHybridBinarizer.Buffers buffers = new ReusableHybridBinarizer.Buffers();
+        final LuminanceSource window = TestImages.render(BarcodeFormat.QR_CODE, "hello",
+                                                         320, 240);
+        final LuminanceSource region = window.crop(40, 40, 120, 96);
+
+        final BitMatrix windowMatrix =
+                new ReusableHybridBinarizer(window, buffers).getBlackMatrix();
+        final BitMatrix regionMatrix =
+                new ReusableHybridBinarizer(region, buffers).getBlackMatrix();
+
+        // Alternating between the two sizes reuses both matrices
+        assertSame(windowMatrix,
+                   new ReusableHybridBinarizer(window, buffers).getBlackMatrix());
+        assertSame(regionMatrix,
+                   new ReusableHybridBinarizer(region, buffers).getBlackMatrix());
+        // ... and the reused matrix is recalculated from scratch
+        assertEquals(new HybridBinarizer(region).getBlackMatrix(), regionMatrix);
+    }
+}
@@ -0,0 +1,180 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import com.google.zxing.LuminanceSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SimpleLuminanceSourceTest {
+
+    /** Sizes around (and not a multiple of) the tile size. */
+    private static final int[][] SIZES = {{1, 1}, {1, 7}, {5, 3}, {16, 16}, {37, 23}, {64, 33}};
+
+    private static SimpleLuminanceSource source(final int width,
+                                                final int height) {
+        return new SimpleLuminanceSource(TestImages.gradient(width, height),
+                                         width, height, width, 1);
+    }
+
+    private static byte pixel(final LuminanceSource source,
+                              final int x,
+                              final int y) {
+        return source.getMatrix()[y * source.getWidth() + x];
+    }
+
+    @Test
+    public void stripsPadding() {
+        final int width = 5;
+        final int height = 3;
+        final int rowStride = 16;
+        final byte[] expected = TestImages.gradient(width, height);
+        final byte[] padded = new byte[rowStride * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                padded[y * rowStride + x * 2] = expected[y * width + x];
+                padded[y * rowStride + x * 2 + 1] = (byte) 0xAA;
+            }
+        }
+        final SimpleLuminanceSource source =
+                new SimpleLuminanceSource(padded, width, height, rowStride, 2);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(expected[y * width + x], pixel(source, x, y));
+            }
+        }
+    }
+
+    @Test
+    public void flipHorizontal() {
+        for (final int[] size : SIZES) {
+            final int width = size[0];
+            final int height = size[1];
+            final SimpleLuminanceSource source = source(width, height);
+            final SimpleLuminanceSource flipped = source.flipHorizontal(true);
+            // Includes the middle column of an odd width
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    assertEquals(width + "x" + height + " @" + x + "," + y,
+                                 pixel(source, width - 1 - x, y), pixel(flipped, x, y));
+                }
+            }
+            assertSame(source, source.flipHorizontal(false));
+        }
+    }
+
+    @Test
+    public void flipVertical() {
+        for (final int[] size : SIZES) {
+            final int width = size[0];
+            final int height = size[1];
+            final SimpleLuminanceSource source = source(width, height);
+            final SimpleLuminanceSource flipped = source.flipVertical(true);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    // A vertical flip of the whole buffer is a 180 degree rotation
+                    assertEquals(pixel(source, width - 1 - x, height - 1 - y),
+                                 pixel(flipped, x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rotate() {
+        for (final int[] size : SIZES) {
+            final int width = size[0];
+            final int height = size[1];
+            final SimpleLuminanceSource source = source(width, height);
+            final SimpleLuminanceSource cw = source.rotate(90);
+            final SimpleLuminanceSource ccw = source.rotate(270);
+            final SimpleLuminanceSource ccw2 = source.rotateCounterClockwise();
+
+            assertEquals(height, cw.getWidth());
+            assertEquals(width, cw.getHeight());
+            assertEquals(height, ccw.getWidth());
+            assertEquals(width, ccw.getHeight());
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    final String at = width + "x" + height + " @" + x + "," + y;
+                    final byte expected = pixel(source, x, y);
+                    assertEquals(at, expected, pixel(cw, height - 1 - y, x));
+                    assertEquals(at, expected, pixel(ccw, y, width - 1 - x));
+                    assertEquals(at, expected, pixel(ccw2, y, width - 1 - x));
+                }
+            }
+            assertSame(source, source.rotate(0));
+            assertSame(source, source.rotate(45));
+        }
+    }
+
+    @Test
+    public void transposeMatchesPlainLoop() {
+        for (final int[] size : SIZES) {
+            final int width = size[0];
+            final int height = size[1];
+            final byte[] src = TestImages.gradient(width, height);
+            final byte[] cw = new byte[width * height];
+            final byte[] ccw = new byte[width * height];
+            SimpleLuminanceSource.transpose(src, width, height, cw, true);
+            SimpleLuminanceSource.transpose(src, width, height, ccw, false);
+
+            int dst = 0;
+            for (int x = 0; x < width; x++) {
+                for (int y = height - 1; y >= 0; y--) {
+                    assertEquals(src[y * width + x], cw[dst]);
+                    assertEquals(src[y * width + x], ccw[ccw.length - 1 - dst]);
+                    dst++;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rotateCounterClockwise45() {
+        final int size = 41;
+        final int middle = size / 2;
+        // White, with a single black row through the centre
+        final byte[] data = new byte[size * size];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i / size == middle ? 0 : 200);
+        }
+        final SimpleLuminanceSource rotated =
+                new SimpleLuminanceSource(data, size, size, size, 1).rotateCounterClockwise45();
+
+        assertEquals(size, rotated.getWidth());
+        assertEquals(size, rotated.getHeight());
+        // The centre stays put; the corners are outside the original, i.e. white
+        assertEquals(0, pixel(rotated, middle, middle));
+        assertEquals((byte) 0xFF, pixel(rotated, 0, 0));
+        assertEquals((byte) 0xFF, pixel(rotated, size - 1, size - 1));
+
+        // The black row now runs from the bottom-left to the top-right
+        int black = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (pixel(rotated, x, y) == 0) {
+                    assertTrue(x + "," + y, Math.abs(x + y - (size - 1)) <= 1);
+                    black++;
+                }
+            }
+        }
+        // Its length is the diagonal of the original, less the corners cut off
+        assertTrue(String.valueOf(black), black >= size * 2 / 3);
+    }
+
+    @Test
+    public void cropAndInvert() {
+        final SimpleLuminanceSource source = source(37, 23);
+        final LuminanceSource cropped = source.crop(3, 5, 20, 10);
+        final LuminanceSource inverted = cropped.invert();
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 20; x++) {
+                assertEquals(pixel(source, x + 3, y + 5), pixel(cropped, x, y));
+                assertEquals((byte) ~pixel(source, x + 3, y + 5), pixel(inverted, x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import androidx.annotation.NonNull;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * Creates test images.
+ */
+final class TestImages {
+
+    private TestImages() {
+    }
+
+    /**
+     * Render a barcode as luminance data; black is 0, white is 255.
+     *
+     * @param format of the barcode
+     * @param text   to encode
+     * @param width  of the image
+     * @param height of the image
+     *
+     * @return the image as a source
+     */
+    @NonNull
+    static SimpleLuminanceSource render(@NonNull final BarcodeFormat format,
+                                        @NonNull final String text,
+                                        final int width,
+                                        final int height) {
+        final BitMatrix matrix;
+        try {
+            matrix = new MultiFormatWriter().encode(text, format, width, height);
+        } catch (@NonNull final WriterException e) {
+            throw new IllegalArgumentException(e);
+        }
+        final byte[] data = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data[y * width + x] = (byte) (matrix.get(x, y) ? 0 : 255);
+            }
+        }
+        return new SimpleLuminanceSource(data, width, height, width, 1);
+    }
+
+    /**
+     * Render a barcode as a bitmap ready for decoding.
+     *
+     * @param format of the barcode
+     * @param text   to encode
+     *
+     * @return bitmap
+     */
+    @NonNull
+    static BinaryBitmap bitmap(@NonNull final BarcodeFormat format,
+                               @NonNull final String text) {
+        return new BinaryBitmap(new HybridBinarizer(render(format, text, 300, 200)));
+    }
+
+    /**
+     * Create an image where each pixel value is unique (modulo 256),
+     * so any mix-up of coordinates shows up.
+     *
+     * @param width  of the image
+     * @param height of the image
+     *
+     * @return data, row by row
+     */
+    @NonNull
+    static byte[] gradient(final int width,
+                           final int height) {
+        final byte[] data = new byte[width * height];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7 + i / width);
+        }
+        return data;
+    }
+}
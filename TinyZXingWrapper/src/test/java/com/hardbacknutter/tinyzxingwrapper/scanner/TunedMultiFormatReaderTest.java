@@ -0,0 +1,113 @@
+package com.hardbacknutter.tinyzxingwrapper.scanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class TunedMultiFormatReaderTest {
+
+    private static final String UPC_A = "012345678905";
+    private static final String EAN_13 = "5901234123457";
+
+    private static Map<DecodeHintType, Object> hints(final List<BarcodeFormat> formats) {
+        final Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        return hints;
+    }
+
+    private static void record(final FormatStatistics statistics,
+                               final BarcodeFormat format,
+                               final int times) {
+        for (int i = 0; i < times; i++) {
+            statistics.record(format);
+        }
+    }
+
+    @Test
+    public void decodesAllRequestedFormats()
+            throws NotFoundException {
+        final TunedMultiFormatReader reader = new TunedMultiFormatReader(
+                hints(List.of(BarcodeFormat.QR_CODE, BarcodeFormat.EAN_13)),
+                new FormatStatistics(), 0);
+
+        assertEquals(BarcodeFormat.EAN_13,
+                     reader.decode(TestImages.bitmap(BarcodeFormat.EAN_13, EAN_13))
+                           .getBarcodeFormat());
+        assertEquals(BarcodeFormat.QR_CODE,
+                     reader.decode(TestImages.bitmap(BarcodeFormat.QR_CODE, "hello"))
+                           .getBarcodeFormat());
+    }
+
+    @Test
+    public void ordersReadersByHits() {
+        final FormatStatistics statistics = new FormatStatistics();
+        final TunedMultiFormatReader reader = new TunedMultiFormatReader(
+                hints(List.of(BarcodeFormat.EAN_13, BarcodeFormat.CODE_128,
+                              BarcodeFormat.QR_CODE, BarcodeFormat.DATA_MATRIX)),
+                statistics, 0);
+
+        // Same order as the MultiFormatReader until there are hits
+        assertEquals(List.of(EnumSet.of(BarcodeFormat.EAN_13, BarcodeFormat.CODE_128),
+                             Set.of(BarcodeFormat.QR_CODE),
+                             Set.of(BarcodeFormat.DATA_MATRIX)),
+                     reader.getReaderOrder());
+
+        record(statistics, BarcodeFormat.DATA_MATRIX, 3);
+        record(statistics, BarcodeFormat.QR_CODE, 2);
+        assertEquals(List.of(Set.of(BarcodeFormat.DATA_MATRIX),
+                             Set.of(BarcodeFormat.QR_CODE),
+                             EnumSet.of(BarcodeFormat.EAN_13, BarcodeFormat.CODE_128)),
+                     reader.getReaderOrder());
+
+        // The 1D formats share a reader, so their hits add up
+        record(statistics, BarcodeFormat.EAN_13, 2);
+        record(statistics, BarcodeFormat.CODE_128, 2);
+        assertEquals(EnumSet.of(BarcodeFormat.EAN_13, BarcodeFormat.CODE_128),
+                     reader.getReaderOrder().get(0));
+    }
+
+    @Test
+    public void narrowedToEan13StillReportsUpcA()
+            throws NotFoundException {
+        final FormatStatistics statistics = new FormatStatistics();
+        final TunedMultiFormatReader reader = new TunedMultiFormatReader(
+                hints(BarcodeFamily.PRODUCT), statistics, 3);
+        record(statistics, BarcodeFormat.EAN_13, 5);
+
+        final BinaryBitmap upcA = TestImages.bitmap(BarcodeFormat.UPC_A, UPC_A);
+        // Not a probe; only the narrowed reader is tried
+        final Result result = reader.decode(upcA);
+        assertEquals(BarcodeFormat.UPC_A, result.getBarcodeFormat());
+        assertEquals(UPC_A, result.getText());
+    }
+
+    @Test
+    public void narrowedReaderIsProbedEvery16thDecode()
+            throws NotFoundException {
+        final FormatStatistics statistics = new FormatStatistics();
+        final TunedMultiFormatReader reader = new TunedMultiFormatReader(
+                hints(List.of(BarcodeFormat.QR_CODE, BarcodeFormat.EAN_13)), statistics, 3);
+        record(statistics, BarcodeFormat.QR_CODE, 3);
+
+        final BinaryBitmap ean = TestImages.bitmap(BarcodeFormat.EAN_13, EAN_13);
+        for (int i = 1; i < 16; i++) {
+            assertThrows(NotFoundException.class, () -> reader.decode(ean));
+        }
+        assertEquals(BarcodeFormat.EAN_13, reader.decode(ean).getBarcodeFormat());
+        // The streak is broken, so the next decode tries everything again
+        assertEquals(BarcodeFormat.EAN_13, reader.decode(ean).getBarcodeFormat());
+    }
+}